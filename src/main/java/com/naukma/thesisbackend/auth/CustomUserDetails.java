@@ -2,6 +2,7 @@ package com.naukma.thesisbackend.auth;
 
 import com.naukma.thesisbackend.entities.User;
 import com.naukma.thesisbackend.enums.UserRole;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,29 +10,66 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.util.Collection;
 import java.util.List;
 
+/**
+ * principal of authenticated user. It keeps only fields of user needed for authentication, not the entity itself,
+ * so it can be cached and shared between requests. For requests with access token it is built from claims of token,
+ * without loading user from database
+ */
 public class CustomUserDetails implements UserDetails {
 
-    private final User user;
+    private final String userId;
+    private final String nickname;
+    private final @Nullable String password;
+    private final UserRole role;
+    private final int tokenVersion;
 
     public CustomUserDetails(User user){
-        this.user = user;
+        this.userId = user.getUserId();
+        this.nickname = user.getNickname();
+        this.password = user.getPassword();
+        this.role = user.getRole();
+        this.tokenVersion = user.getTokenVersion();
+    }
+
+    /**
+     * creates principal from claims of access token, without password
+     * @param tokenVersion version of tokens of user at the moment when token was issued
+     */
+    public CustomUserDetails(String userId, String nickname, UserRole role, int tokenVersion){
+        this.userId = userId;
+        this.nickname = nickname;
+        this.password = null;
+        this.role = role;
+        this.tokenVersion = tokenVersion;
+    }
+
+    public String getNickname() {
+        return this.nickname;
+    }
+
+    public UserRole getRole() {
+        return this.role;
+    }
+
+    public int getTokenVersion() {
+        return this.tokenVersion;
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return this.user.getRole()==UserRole.ADMIN?
+        return this.role==UserRole.ADMIN?
                 List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))
                 :List.of(new SimpleGrantedAuthority("ROLE_USER"));
     }
 
     @Override
-    public String getPassword() {
-        return this.user.getPassword();
+    public @Nullable String getPassword() {
+        return this.password;
     }
 
     @Override
     public String getUsername() {
-        return this.user.getUserId();
+        return this.userId;
     }
 
     @Override
@@ -1,11 +1,14 @@
 package com.naukma.thesisbackend.auth;
 
 
+import com.naukma.thesisbackend.cache.PrincipalCache;
+import com.naukma.thesisbackend.cache.PrincipalCache.CachedPrincipal;
 import com.naukma.thesisbackend.repositories.UserRepository;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
@@ -18,10 +21,17 @@ public class SecurityFilter extends OncePerRequestFilter {
 
     private final TokenProvider tokenService;
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
 
-    public SecurityFilter(TokenProvider tokenService, UserRepository userRepository) {
+    public SecurityFilter(TokenProvider tokenService,
+                          UserRepository userRepository,
+                          PrincipalCache principalCache,
+                          TokenVersionRegistry tokenVersionRegistry) {
         this.tokenService = tokenService;
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
     }
 
     @Override
@@ -29,21 +39,37 @@ public class SecurityFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         var token = this.recoverToken(request);
         if (token != null) {
-            var userId = tokenService.validateToken(token);
+            //token is verified only if it is not cached yet
+            var userDetails = principalCache.get(token, this::authenticate);
 
-            if(userId!=null) {
-                var user = userRepository.findByUserId(userId);
-
-                if (user.isPresent()) {
-                    var userDetails = new CustomUserDetails(user.get());
-                    var authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
+            //revoked tokens, tokens with old role and tokens of deleted users stay cached, so they are checked on every request
+            if (userDetails != null
+                    && tokenVersionRegistry.isCurrent(userDetails.getUsername(), userDetails.getTokenVersion(), userDetails.getRole())) {
+                var authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         }
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * verifies token and builds principal from its claims.
+     * User is loaded only for tokens issued before claims were added, such tokens have the initial version
+     * @return principal of user with expiration of token, or null if token is invalid or user doesn't exist
+     */
+    private @Nullable CachedPrincipal authenticate(String token) {
+        var decodedToken = tokenService.verifyToken(token);
+        if (decodedToken == null) return null;
+
+        var userDetails = tokenService.readPrincipal(decodedToken);
+        if (userDetails == null) {
+            userDetails = userRepository.findByUserId(decodedToken.getSubject())
+                    .map(user -> new CustomUserDetails(user.getUserId(), user.getNickname(), user.getRole(), 0))
+                    .orElse(null);
+        }
+        return userDetails != null ? new CachedPrincipal(userDetails, decodedToken.getExpiresAtAsInstant()) : null;
+    }
+
     private String recoverToken(HttpServletRequest request) {
         var authHeader = request.getHeader("Authorization");
         if (authHeader == null)
@@ -5,8 +5,12 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import com.naukma.thesisbackend.enums.UserRole;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -15,15 +19,33 @@ import java.time.ZoneOffset;
 
 @Service
 public class TokenProvider {
-    @Value("${security.jwt.token.secret-key}")
-    private String JWT_SECRET;
 
-    public String generateAccessToken(UserDetails user) {
+    /**
+     * claims, from which principal of user is built without loading user
+     */
+    private static final String NICKNAME_CLAIM = "nickname";
+    private static final String ROLE_CLAIM = "role";
+    private static final String TOKEN_VERSION_CLAIM = "tokenVersion";
+
+    /**
+     * algorithm and verifier are thread-safe, so they are created once
+     */
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+
+    public TokenProvider(@Value("${security.jwt.token.secret-key}") String jwtSecret) {
+        this.algorithm = Algorithm.HMAC256(jwtSecret);
+        this.verifier = JWT.require(algorithm).build();
+    }
+
+    public String generateAccessToken(CustomUserDetails user) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(JWT_SECRET);
             return JWT.create()
                     .withSubject(user.getUsername())
                     .withClaim("username", user.getUsername())
+                    .withClaim(NICKNAME_CLAIM, user.getNickname())
+                    .withClaim(ROLE_CLAIM, user.getRole().name())
+                    .withClaim(TOKEN_VERSION_CLAIM, user.getTokenVersion())
                     .withExpiresAt(generateAccessExpirationDate())
                     .sign(algorithm);
         } catch (JWTCreationException exception) {
@@ -37,17 +59,37 @@ public class TokenProvider {
      * @return userId if token is valid, null otherwise
      */
     public String validateToken(String token) {
+        DecodedJWT decodedToken = verifyToken(token);
+        return decodedToken != null ? decodedToken.getSubject() : null;
+    }
+
+    /**
+     * verifies signature and expiration of JWT token
+     * @param token JWT token
+     * @return decoded token if it is valid, null otherwise
+     */
+    public @Nullable DecodedJWT verifyToken(String token) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(JWT_SECRET);
-            return JWT.require(algorithm)
-                    .build()
-                    .verify(token)
-                    .getSubject();
+            return verifier.verify(token);
         } catch (JWTVerificationException exception) {
             return null;
         }
     }
 
+    /**
+     * builds principal of user from claims of verified token
+     * @param token verified token
+     * @return principal, or null if token was issued before claims of user were added into it
+     */
+    public @Nullable CustomUserDetails readPrincipal(DecodedJWT token) {
+        Claim nickname = token.getClaim(NICKNAME_CLAIM);
+        Claim role = token.getClaim(ROLE_CLAIM);
+        Claim tokenVersion = token.getClaim(TOKEN_VERSION_CLAIM);
+        if(nickname.isMissing() || role.isMissing() || tokenVersion.isMissing()) return null;
+
+        return new CustomUserDetails(token.getSubject(), nickname.asString(), UserRole.valueOf(role.asString()), tokenVersion.asInt());
+    }
+
     private Instant generateAccessExpirationDate() {
         return LocalDateTime.now().plusDays(2).toInstant(ZoneOffset.of("+03:00"));
     }
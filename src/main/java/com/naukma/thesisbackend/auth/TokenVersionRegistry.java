@@ -0,0 +1,66 @@
+package com.naukma.thesisbackend.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.naukma.thesisbackend.cache.ConcurrentLoadGuard;
+import com.naukma.thesisbackend.enums.UserRole;
+import com.naukma.thesisbackend.projections.TokenState;
+import com.naukma.thesisbackend.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * current versions of access tokens and roles of users. Principal is built from claims of token without loading its user,
+ * so this is the only check against database on authenticated request: token is accepted only if its user still exists,
+ * its version is not revoked and its role is still the role of user.
+ * Versions are cached for short time, so changes made outside of application are applied too
+ */
+@Component
+public class TokenVersionRegistry {
+
+    private final UserRepository userRepository;
+    private final Cache<String, TokenState> versions;
+
+    /**
+     * versions loaded concurrently with eviction are not cached
+     */
+    private final ConcurrentLoadGuard loadGuard = new ConcurrentLoadGuard();
+
+    public TokenVersionRegistry(UserRepository userRepository,
+                                @Value("${custom.token-versions.max-size}") long maxSize,
+                                @Value("${custom.token-versions.ttl-seconds}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * checks if token with given version and role is still valid
+     * @param userId id of user from token
+     * @param tokenVersion version of token
+     * @param role role of user from token
+     * @return true if user exists, its tokens were not revoked after token was issued and its role was not changed
+     */
+    public boolean isCurrent(String userId, int tokenVersion, UserRole role) {
+        TokenState current = versions.getIfPresent(userId);
+        if(current == null){
+            //absent users are not cached, since user with the same id can sign up again
+            current = loadGuard.load(versions, userId, () -> userRepository.findTokenState(userId).orElse(null));
+            if(current == null) return false;
+        }
+        return current.tokenVersion() == tokenVersion && current.role() == role;
+    }
+
+    /**
+     * evicts version of user. Should be called when user is deleted, its tokens are revoked or its role is changed.
+     * Inside of transaction it is done after commit, otherwise old version could be cached again before it
+     * @param userId id of user
+     */
+    public void evictUser(String userId) {
+        loadGuard.evictAfterCommit(() -> versions.invalidate(userId));
+    }
+}
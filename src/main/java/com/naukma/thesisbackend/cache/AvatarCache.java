@@ -0,0 +1,71 @@
+package com.naukma.thesisbackend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * cache of avatar images, which are read the most often. Size of cache is limited by total number of cached bytes,
+ * and images are evicted when they are deleted from avatar directory.
+ * Content is kept only for small images, large ones are cached only with their validators and streamed from file
+ */
+@Component
+public class AvatarCache {
+
+    /**
+     * approximate memory taken by cached image without its content
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    /**
+     * image with its validators for conditional requests
+     * @param file path of image file
+     * @param length size of image in bytes
+     * @param contentType media type, determined by file extension
+     * @param etag quoted hash of content
+     * @param lastModified time of last modification of image file
+     * @param bytes content of image, null if image is too large to be kept in memory
+     */
+    public record CachedAvatar(Path file,
+                               long length,
+                               MediaType contentType,
+                               String etag,
+                               Instant lastModified,
+                               @Nullable byte[] bytes) {
+    }
+
+    private final Cache<String, CachedAvatar> cache;
+
+    public AvatarCache(@Value("${custom.avatar-cache.max-bytes}") long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String imageName, CachedAvatar avatar) ->
+                        ENTRY_OVERHEAD_BYTES + (avatar.bytes() != null ? avatar.bytes().length : 0))
+                .build();
+    }
+
+    /**
+     * gets image from cache, or loads and caches it
+     * @param imageName image file name
+     * @param loader function for reading image from file system, returns null if there is no such image
+     * @return image or null if it doesn't exist
+     */
+    public @Nullable CachedAvatar get(String imageName, Function<String, CachedAvatar> loader) {
+        return cache.get(imageName, loader);
+    }
+
+    /**
+     * evicts image. Should be called when image file is deleted or replaced
+     * @param imageName image file name
+     */
+    public void evict(String imageName) {
+        cache.invalidate(imageName);
+    }
+}
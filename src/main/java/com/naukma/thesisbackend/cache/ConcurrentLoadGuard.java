@@ -0,0 +1,48 @@
+package com.naukma.thesisbackend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.naukma.thesisbackend.transaction.TransactionHooks;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * protects cache from values, which were loaded concurrently with eviction. Such value could be read from database
+ * before the evicting write was committed, so it is put into cache only if no eviction happened while it was loaded
+ */
+public final class ConcurrentLoadGuard {
+
+    /**
+     * incremented on every eviction
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * loads value and caches it, unless it could be outdated by concurrent eviction
+     * @param cache cache of values
+     * @param key key of value
+     * @param loader function for loading value, returns null if there is no value
+     * @return loaded value, or null if loader returned null. Null is not cached
+     */
+    public <K, V> @Nullable V load(Cache<K, V> cache, K key, Supplier<V> loader) {
+        long version = evictions.get();
+        V value = loader.get();
+        if(value == null) return null;
+
+        cache.put(key, value);
+        if(version != evictions.get()) cache.invalidate(key);
+        return value;
+    }
+
+    /**
+     * runs eviction after commit of current transaction, otherwise old data could be cached again before it
+     * @param eviction action, which removes affected entries from cache
+     */
+    public void evictAfterCommit(Runnable eviction) {
+        TransactionHooks.afterCommit(() -> {
+            evictions.incrementAndGet();
+            eviction.run();
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package com.naukma.thesisbackend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.naukma.thesisbackend.dtos.PostDto;
+import com.naukma.thesisbackend.entities.Post;
+import com.naukma.thesisbackend.entities.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * cache of post pages, requested by anonymous users. Such pages don't depend on current user, so they are shared.
+ * Entries are evicted by size and time, and also on writes, which may change them
+ */
+@Component
+public class FeedCache {
+
+    private final Cache<FeedCacheKey, Page<PostDto>> cache;
+
+    /**
+     * pages loaded concurrently with write are not cached
+     */
+    private final ConcurrentLoadGuard loadGuard = new ConcurrentLoadGuard();
+
+    public FeedCache(@Value("${custom.feed-cache.max-size}") long maxSize,
+                     @Value("${custom.feed-cache.ttl-seconds}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * gets page from cache, or loads and caches it
+     * @param key normalized request
+     * @param loader function for loading page from database
+     * @return requested page
+     */
+    public Page<PostDto> get(FeedCacheKey key, Supplier<Page<PostDto>> loader) {
+        Page<PostDto> cached = cache.getIfPresent(key);
+        if(cached != null) return cached;
+
+        return loadGuard.load(cache, key, loader);
+    }
+
+    /**
+     * evicts pages, which may include post or be shifted by it. Should be called when post is created or deleted
+     * @param post created or deleted post
+     */
+    public void evictPost(Post post) {
+        evictPost(post.getPostAuthor().getUserId(), tagIdsOf(post), post.getPostedDate());
+    }
+
+    /**
+     * evicts pages, which may include post with given properties or be shifted by it
+     * @param authorUserId id of post author
+     * @param tagIds ids of post tags
+     * @param postedDate date of post creation
+     */
+    public void evictPost(String authorUserId, Collection<Long> tagIds, LocalDateTime postedDate) {
+        evictAfterCommit(key -> key.mayContain(authorUserId, tagIds, postedDate));
+    }
+
+    /**
+     * evicts pages, which show number of likes of any of posts. Should be called when posts are liked or unliked.
+     * Pages sorted by likes or trending score are left to expire by time, since every like would evict them,
+     * so their order and counters may be stale for the time to live
+     * @param postIds ids of liked posts
+     */
+    public void evictLikes(Set<Long> postIds) {
+        evictAfterCommit(key -> !key.isSortedByLikes() && contains(key, postIds));
+    }
+
+    /**
+     * evicts all pages sorted by likes or trending score
+     */
+    public void evictSortedByLikes() {
+        evictAfterCommit(FeedCacheKey::isSortedByLikes);
+    }
+
+    /**
+     * evicts all pages
+     */
+    public void evictAll() {
+        evictAfterCommit(key -> true);
+    }
+
+    /**
+     * @return hit and miss statistics of cache
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return approximate number of cached pages
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * evicts matching pages. Inside of transaction it is done after commit,
+     * otherwise old version of data could be cached again before it
+     */
+    private void evictAfterCommit(Predicate<FeedCacheKey> affected) {
+        loadGuard.evictAfterCommit(() -> cache.asMap().keySet().removeIf(affected));
+    }
+
+    private boolean contains(FeedCacheKey key, Set<Long> postIds) {
+        return cache.asMap().getOrDefault(key, Page.empty()).stream()
+                .anyMatch(postDto -> postIds.contains(postDto.postId()));
+    }
+
+    private static List<Long> tagIdsOf(Post post) {
+        return post.getTags().stream().map(Tag::getTagId).toList();
+    }
+}
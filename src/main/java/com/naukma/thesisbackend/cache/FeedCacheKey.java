@@ -0,0 +1,79 @@
+package com.naukma.thesisbackend.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * normalized parameters of anonymous request for page of posts, used as key of {@link FeedCache}.
+ * Equivalent requests (for example, with same tags in different order) produce equal keys
+ */
+public record FeedCacheKey(
+        @Nullable String authorId,
+        @Nullable List<Long> tagIds,
+        boolean matchAllTags,
+        @Nullable LocalDateTime minDate,
+        @Nullable LocalDateTime maxDate,
+        @Nullable String title,
+        String sortProperty,
+        boolean ascending,
+        int page,
+        int size
+) {
+
+    /**
+     * creates normalized key
+     * @param sortProperty property of post by which page is sorted
+     * @return key of cached page
+     */
+    public static FeedCacheKey of(@Nullable String authorId,
+                                  @Nullable List<Long> tagIds,
+                                  @Nullable String tagMode,
+                                  @Nullable LocalDateTime minDate,
+                                  @Nullable LocalDateTime maxDate,
+                                  @Nullable String title,
+                                  String sortProperty,
+                                  boolean ascending,
+                                  int page,
+                                  int size
+    ) {
+        List<Long> normalizedTagIds = (tagIds == null || tagIds.isEmpty())
+                ? null
+                : tagIds.stream().filter(Objects::nonNull).distinct().sorted().toList();
+        String normalizedTitle = (title == null || title.isBlank()) ? null : title.trim().toLowerCase();
+
+        return new FeedCacheKey(authorId, normalizedTagIds,
+                normalizedTagIds != null && "ALL".equalsIgnoreCase(tagMode),
+                minDate, maxDate, normalizedTitle, sortProperty, ascending, page, size);
+    }
+
+    /**
+     * @return true if order of posts depends on their likes
+     */
+    public boolean isSortedByLikes() {
+        return sortProperty.equals("likeCount") || sortProperty.equals("trendingScore");
+    }
+
+    /**
+     * checks if post with given properties may be part of result of the request.
+     * Title filter is not evaluated, so such requests are considered matching
+     * @param authorUserId id of post author
+     * @param postTagIds ids of post tags
+     * @param postedDate date of post creation
+     * @return false if post can't be part of the result, true otherwise
+     */
+    public boolean mayContain(String authorUserId, Collection<Long> postTagIds, LocalDateTime postedDate) {
+        if(authorId != null && !authorUserId.contains(authorId)) return false;
+        if(minDate != null && postedDate.isBefore(minDate)) return false;
+        if(maxDate != null && postedDate.isAfter(maxDate)) return false;
+        if(tagIds != null){
+            return matchAllTags
+                    ? postTagIds.containsAll(tagIds)
+                    : tagIds.stream().anyMatch(postTagIds::contains);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+package com.naukma.thesisbackend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.naukma.thesisbackend.auth.CustomUserDetails;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * cache of users, authenticated by access tokens, so signature of token is verified and its claims are read
+ * only on the first request with it. Tokens are kept as their SHA-256 digests.
+ * Entry expires together with its token, or earlier
+ */
+@Component
+public class PrincipalCache {
+
+    /**
+     * user authenticated by token
+     * @param userDetails principal of user
+     * @param expiresAt time of expiration of token, null if token doesn't expire
+     */
+    public record CachedPrincipal(CustomUserDetails userDetails, @Nullable Instant expiresAt) {
+    }
+
+    private final Cache<ByteBuffer, CachedPrincipal> cache;
+
+    /**
+     * principals loaded concurrently with eviction are not cached, since user could be deleted while token was verified
+     */
+    private final ConcurrentLoadGuard loadGuard = new ConcurrentLoadGuard();
+
+    public PrincipalCache(@Value("${custom.principal-cache.max-size}") long maxSize,
+                          @Value("${custom.principal-cache.ttl-seconds}") long ttlSeconds) {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<ByteBuffer, CachedPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer digest, CachedPrincipal principal, long currentTime) {
+                        if(principal.expiresAt() == null) return ttl.toNanos();
+                        long untilExpiration = Duration.between(Instant.now(), principal.expiresAt()).toNanos();
+                        return Math.max(Math.min(untilExpiration, ttl.toNanos()), 0);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer digest, CachedPrincipal principal, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, principal, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer digest, CachedPrincipal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * gets principal from cache, or authenticates token and caches its principal
+     * @param token access token
+     * @param loader function for verifying token and building its principal, returns null if token is invalid
+     * @return principal, or null if token is invalid or its user doesn't exist
+     */
+    public @Nullable CustomUserDetails get(String token, Function<String, CachedPrincipal> loader) {
+        ByteBuffer digest = digestOf(token);
+        CachedPrincipal cached = cache.getIfPresent(digest);
+        if(cached != null) return cached.userDetails();
+
+        CachedPrincipal principal = loadGuard.load(cache, digest, () -> loader.apply(token));
+        return principal != null ? principal.userDetails() : null;
+    }
+
+    /**
+     * evicts principals of user. Should be called when user is deleted or its tokens are revoked.
+     * Inside of transaction it is done after commit, otherwise old version of user could be cached again before it
+     * @param userId id of user
+     */
+    public void evictUser(String userId) {
+        loadGuard.evictAfterCommit(() -> cache.asMap().values()
+                .removeIf(principal -> principal.userDetails().getUsername().equals(userId)));
+    }
+
+    private static ByteBuffer digestOf(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
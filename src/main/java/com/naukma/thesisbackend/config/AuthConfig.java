@@ -39,6 +39,7 @@ public class AuthConfig {
                         .requestMatchers(HttpMethod.GET, "/api/v1/users/profile").hasAnyRole("USER", "ADMIN")
                         .requestMatchers(HttpMethod.POST, "/api/v1/users/{userId}/avatar").access(new WebExpressionAuthorizationManager("#userId == authentication.name"))
                         .requestMatchers(HttpMethod.GET, "/api/v1/users/*", "/api/v1/users/{userId}/posts", "api/v1/users/{userId}/avatar").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/v1/avatars/*").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/users/{userId}/profile", "/api/v1/users/{userId}/liked-posts").access(new WebExpressionAuthorizationManager("#userId == authentication.name"))
                         .requestMatchers(HttpMethod.DELETE, "api/v1/users/{userId}/avatar", "api/v1/users/{userId}").access(new WebExpressionAuthorizationManager("hasRole('ROLE_ADMIN') or #userId == authentication.name"))
 
@@ -54,6 +55,9 @@ public class AuthConfig {
                         .requestMatchers(HttpMethod.GET, "/api/v1/tags/**").permitAll()
                         .requestMatchers("/api/v1/tags/**").hasRole("ADMIN")
 
+                        .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
+
+                        .requestMatchers(HttpMethod.POST, "/api/v1/auth/signout-all").hasAnyRole("USER", "ADMIN")
                         .requestMatchers(HttpMethod.POST, "/api/v1/auth/*").permitAll()
                         .anyRequest().permitAll()
                 )
@@ -0,0 +1,12 @@
+package com.naukma.thesisbackend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * enables background jobs, annotated with {@link org.springframework.scheduling.annotation.Scheduled Scheduled}
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
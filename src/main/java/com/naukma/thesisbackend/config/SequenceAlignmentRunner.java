@@ -0,0 +1,62 @@
+package com.naukma.thesisbackend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * moves id sequences past ids, which already exist in tables.
+ * Posts and comments used identity columns before, so sequences, created for them, start from 1
+ * and would produce ids of existing rows
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SequenceAlignmentRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SequenceAlignmentRunner.class);
+
+    /**
+     * allocation size of sequence generators in entities. Pooled optimizer treats value of sequence
+     * as the last id of pool, so it must be greater than maximal id by at least this number
+     */
+    private static final int ALLOCATION_SIZE = 50;
+
+    private record IdSequence(String sequenceName, String tableName, String idColumn) {
+    }
+
+    private static final List<IdSequence> SEQUENCES = List.of(
+            new IdSequence("post_seq", "post", "post_id"),
+            new IdSequence("comment_seq", "comment", "comment_id")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceAlignmentRunner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for(IdSequence sequence : SEQUENCES){
+            Long maxId = jdbcTemplate.queryForObject(
+                    "SELECT MAX(" + sequence.idColumn() + ") FROM " + sequence.tableName(), Long.class);
+            if(maxId == null) continue;
+
+            Long nextValue = jdbcTemplate.queryForObject(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?",
+                    Long.class, sequence.sequenceName().toUpperCase());
+            long minNextValue = maxId + ALLOCATION_SIZE;
+            if(nextValue != null && nextValue < minNextValue){
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence.sequenceName() + " RESTART WITH " + minNextValue);
+                log.info("Sequence {} restarted with {}", sequence.sequenceName(), minNextValue);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.naukma.thesisbackend.cache.FeedCache;
+import com.naukma.thesisbackend.search.PostSearchIndex;
+import com.naukma.thesisbackend.dtos.AvatarSweepReportDto;
+import com.naukma.thesisbackend.dtos.ImportReportDto;
+import com.naukma.thesisbackend.enums.UserRole;
+import com.naukma.thesisbackend.services.AvatarSweepService;
+import com.naukma.thesisbackend.services.PostExportService;
+import com.naukma.thesisbackend.services.PostImportService;
+import com.naukma.thesisbackend.services.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * controller for maintenance operations, accessible only by admin
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+    private final PostSearchIndex postSearchIndex;
+    private final FeedCache feedCache;
+    private final PostExportService postExportService;
+    private final PostImportService postImportService;
+    private final AvatarSweepService avatarSweepService;
+    private final UserService userService;
+
+    public AdminController(PostSearchIndex postSearchIndex,
+                           FeedCache feedCache,
+                           PostExportService postExportService,
+                           PostImportService postImportService,
+                           AvatarSweepService avatarSweepService,
+                           UserService userService) {
+        this.postSearchIndex = postSearchIndex;
+        this.feedCache = feedCache;
+        this.postExportService = postExportService;
+        this.postImportService = postImportService;
+        this.avatarSweepService = avatarSweepService;
+        this.userService = userService;
+    }
+
+    /**
+     * rebuilds full-text search index of posts from database
+     * @return number of indexed posts
+     */
+    @PostMapping("/search-index/rebuild")
+    public ResponseEntity<?> rebuildSearchIndex(){
+        long indexed = postSearchIndex.rebuild();
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("indexed", indexed);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
+    /**
+     * @return statistics of cache of anonymous post pages
+     */
+    @GetMapping("/feed-cache/stats")
+    public ResponseEntity<?> getFeedCacheStats(){
+        CacheStats stats = feedCache.stats();
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("size", feedCache.size());
+        responseBody.put("hits", stats.hitCount());
+        responseBody.put("misses", stats.missCount());
+        responseBody.put("hitRate", stats.hitRate());
+        responseBody.put("evictions", stats.evictionCount());
+
+        return ResponseEntity.ok(responseBody);
+    }
+
+    /**
+     * changes role of user
+     * @param userId id of user
+     * @param role new role of user
+     */
+    @PutMapping("/users/{userId}/role")
+    public ResponseEntity<?> changeUserRole(@PathVariable String userId, @RequestParam UserRole role){
+        userService.changeRole(userId, role);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * deletes avatar images, which are not referenced by any user
+     * @return numbers of scanned and deleted files, and reclaimed bytes
+     */
+    @PostMapping("/avatars/sweep")
+    public ResponseEntity<AvatarSweepReportDto> sweepAvatars(){
+        return ResponseEntity.ok(avatarSweepService.sweep());
+    }
+
+    /**
+     * exports all posts with tags and like counters as NDJSON, one post per line.
+     * Response is written while posts are read from database, so it can be used for any number of posts
+     * @param comments true if every post has to contain all of its comments
+     */
+    @GetMapping("/posts/export")
+    public void exportPosts(@RequestParam(defaultValue = "false") boolean comments,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"posts.ndjson\"");
+
+        postExportService.exportPosts(comments, response.getOutputStream());
+    }
+
+    /**
+     * imports posts with comments from NDJSON body, one post per line.
+     * Lines are committed in chunks, invalid lines and failed chunks are skipped
+     * @return numbers of imported posts and comments, with throughput and errors of every chunk
+     */
+    @PostMapping("/posts/import")
+    public ResponseEntity<ImportReportDto> importPosts(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(postImportService.importPosts(request.getInputStream()));
+    }
+}
@@ -1,16 +1,17 @@
 package com.naukma.thesisbackend.controllers;
 
+import com.naukma.thesisbackend.auth.CustomUserDetails;
 import com.naukma.thesisbackend.auth.TokenProvider;
 import com.naukma.thesisbackend.dtos.JwtDto;
 import com.naukma.thesisbackend.dtos.SignInDto;
 import com.naukma.thesisbackend.dtos.SignUpDto;
 import com.naukma.thesisbackend.exceptions.AuthenticationFailedException;
 import com.naukma.thesisbackend.services.AuthService;
+import com.naukma.thesisbackend.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -21,33 +22,45 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
   private final AuthenticationManager authenticationManager;
-  private final AuthService userService;
+  private final AuthService authService;
   private final TokenProvider tokenService;
+  private final UserService userService;
 
-  public AuthController(AuthenticationManager authenticationManager, AuthService userService, TokenProvider tokenService){
+  public AuthController(AuthenticationManager authenticationManager, AuthService authService, TokenProvider tokenService,
+                        UserService userService){
 
     this.authenticationManager = authenticationManager;
-    this.userService = userService;
+    this.authService = authService;
     this.tokenService = tokenService;
+    this.userService = userService;
   }
 
   @PostMapping("/signup")
   public ResponseEntity<?> signUp(@RequestBody SignUpDto data) {
-    userService.signUp(data);
+    authService.signUp(data);
     return ResponseEntity.status(HttpStatus.CREATED).build();
   }
 
   @PostMapping("/signin")
   public ResponseEntity<JwtDto> signIn(@RequestBody SignInDto signInDto) {
-    if(!userService.userExists(signInDto.userId())) throw new AuthenticationFailedException("Username or password invalid");
+    if(!authService.userExists(signInDto.userId())) throw new AuthenticationFailedException("Username or password invalid");
 
     var usernamePassword = new UsernamePasswordAuthenticationToken(signInDto.userId(), signInDto.password());
 
     var authUser = authenticationManager.authenticate(usernamePassword);
 
-    var accessToken = tokenService.generateAccessToken((UserDetails) authUser.getPrincipal());
+    var accessToken = tokenService.generateAccessToken((CustomUserDetails) authUser.getPrincipal());
 
     return ResponseEntity.ok(new JwtDto(accessToken));
   }
 
-}
\ No newline at end of file
+  /**
+   * method for signing out of all devices. All access tokens issued to current user before it become invalid
+   */
+  @PostMapping("/signout-all")
+  public ResponseEntity<?> signOutAll() {
+    userService.revokeTokens(authService.getCurrentUserId());
+    return ResponseEntity.noContent().build();
+  }
+
+}
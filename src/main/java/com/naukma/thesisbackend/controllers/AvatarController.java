@@ -0,0 +1,126 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.naukma.thesisbackend.cache.AvatarCache.CachedAvatar;
+import com.naukma.thesisbackend.services.AvatarService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * controller for getting avatars by their immutable urls. Avatar is stored under hash of its content,
+ * so content behind url never changes and can be cached by clients forever
+ */
+@RestController
+@RequestMapping("api/v1/avatars")
+public class AvatarController {
+
+    private static final String AVATARS_PATH = "/api/v1/avatars/";
+
+    /**
+     * request attributes of Tomcat, used to send file directly from file system
+     */
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    /**
+     * used while thumbnail is not generated yet, so original image is served instead of it
+     */
+    private static final CacheControl TEMPORARY = CacheControl.maxAge(Duration.ofMinutes(1)).cachePublic();
+
+    private final AvatarService avatarService;
+
+    public AvatarController(AvatarService avatarService) {
+        this.avatarService = avatarService;
+    }
+
+    /**
+     * builds immutable url of avatar
+     * @param avatar name of avatar image
+     * @return url of avatar, or null if there is no avatar
+     */
+    public static @Nullable String urlOf(@Nullable String avatar) {
+        return avatar != null ? AVATARS_PATH + UriUtils.encodePathSegment(avatar, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * method for getting avatar by its name from avatar url
+     * @param imageName name of avatar image
+     * @param size requested size of image in pixels. Square thumbnail of the nearest larger size is returned,
+     *             or original image if there is no such thumbnail
+     * @return avatar as resource, or status 404 if there is no such avatar
+     * @throws IOException if problem occured with reading data
+     */
+    @GetMapping("/{imageName}")
+    public ResponseEntity<Resource> getAvatar(@PathVariable String imageName,
+                                              @RequestParam(required = false) Integer size,
+                                              ServletWebRequest webRequest) throws IOException {
+        CachedAvatar image = avatarService.getStoredImage(imageName, size);
+        if (image == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        boolean thumbnailPending = size != null
+                && image.file().getFileName().toString().equals(imageName)
+                && avatarService.hasThumbnailFor(imageName, size);
+        return imageResponse(image, thumbnailPending ? TEMPORARY : IMMUTABLE, webRequest);
+    }
+
+    /**
+     * builds response with image and its validators.
+     * Large images are not read into memory: whole image is sent by server directly from file, when it is supported,
+     * otherwise image or its requested ranges are streamed from file
+     * @param image image to send
+     * @param cacheControl caching policy of response
+     * @return response with image
+     */
+    static ResponseEntity<Resource> imageResponse(CachedAvatar image, CacheControl cacheControl, ServletWebRequest webRequest) {
+        //status 304 and partial responses for Range requests are sent by framework, based on these headers
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(image.contentType())
+                .eTag(image.etag())
+                .lastModified(image.lastModified())
+                .cacheControl(cacheControl)
+                //browser must not guess other type of content, than the one detected on upload
+                .header("X-Content-Type-Options", "nosniff");
+
+        if (image.bytes() != null) {
+            return response.body(new ByteArrayResource(image.bytes()));
+        }
+
+        HttpServletRequest request = webRequest.getRequest();
+        if (HttpMethod.GET.matches(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            if (webRequest.checkNotModified(image.etag(), image.lastModified().toEpochMilli())) {
+                return response.build();
+            }
+            //server writes file to socket after headers, without copying it through application
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, image.file().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, image.length());
+            return response
+                    .contentLength(image.length())
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .build();
+        }
+
+        return response.body(new FileSystemResource(image.file()));
+    }
+}
@@ -2,14 +2,16 @@ package com.naukma.thesisbackend.controllers;
 
 import com.naukma.thesisbackend.dtos.CommentDto;
 import com.naukma.thesisbackend.dtos.CommentRequestDto;
+import com.naukma.thesisbackend.dtos.CursorPageDto;
 import com.naukma.thesisbackend.entities.Comment;
-import com.naukma.thesisbackend.entities.User;
 import com.naukma.thesisbackend.exceptions.ForbiddenException;
 import com.naukma.thesisbackend.services.AuthService;
 import com.naukma.thesisbackend.services.CommentService;
-import com.naukma.thesisbackend.services.UserService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -17,17 +19,16 @@ import java.util.Map;
 import java.util.Objects;
 
 @RestController
+@Validated
 @RequestMapping("api/v1/comments")
 public class CommentController {
 
     private final AuthService authService;
     private final CommentService commentService;
-    private final UserService userService;
 
-    public CommentController(AuthService authService, CommentService commentService, UserService userService) {
+    public CommentController(AuthService authService, CommentService commentService) {
         this.authService = authService;
         this.commentService = commentService;
-        this.userService = userService;
     }
 
     /**
@@ -44,7 +45,32 @@ public class CommentController {
                 .orElseThrow(()->new EntityNotFoundException("No such comment found"));
 
         return ResponseEntity
-                .ok(commentService.commentToCommentDto(comment, userId));
+                .ok(commentService.getCommentThread(comment, userId));
+    }
+
+    /**
+     * retrieves replies of comment page by page, used for loading replies which were not included into comment thread
+     * @param commentId id of comment
+     * @param cursor value of repliesCursor of comment or nextCursor from previous page, absent for the first page
+     * @param size number of replies in page
+     * @param depth number of nested reply levels to include
+     * @param repliesSize maximal number of nested replies included for every reply
+     * @return page of replies
+     */
+    @GetMapping("/{commentId}/replies")
+    public ResponseEntity<CursorPageDto<CommentDto>> getCommentReplies(@PathVariable("commentId") Long commentId,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer size,
+                                                                       @RequestParam(defaultValue = "1") @Min(0) @Max(PageLimits.MAX_COMMENT_DEPTH) Integer depth,
+                                                                       @RequestParam(defaultValue = "3") @Min(0) @Max(PageLimits.MAX_PAGE_SIZE) Integer repliesSize){
+        String userId = authService.getCurrentUserId();
+
+        Comment comment = commentService
+                .getCommentById(commentId)
+                .orElseThrow(()->new EntityNotFoundException("No such comment found"));
+
+        return ResponseEntity
+                .ok(commentService.getCommentReplies(comment, cursor, size, depth, repliesSize, userId));
     }
 
     /**
@@ -92,10 +118,43 @@ public class CommentController {
     public ResponseEntity<?> toggleLike(@PathVariable("commentId") Long commentId){
         String userId = authService.getCurrentUserId();
 
-        User user = userService.getUserById(userId)
-                .orElseThrow(()->new EntityNotFoundException("User not found"));
+        boolean isLiked = commentService.toggleLike(userId, commentId);
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("isLiked", isLiked);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
+    /**
+     * sets like of comment, repeated requests have the same result
+     * requires authenticated user to perform
+     * @param commentId id of comment
+     * @return isLiked with value true
+     */
+    @PutMapping("/{commentId}/like")
+    public ResponseEntity<?> setLike(@PathVariable("commentId") Long commentId){
+        String userId = authService.getCurrentUserId();
+
+        boolean isLiked = commentService.setLike(userId, commentId, true);
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("isLiked", isLiked);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
+    /**
+     * removes like from comment, repeated requests have the same result
+     * requires authenticated user to perform
+     * @param commentId id of comment
+     * @return isLiked with value false
+     */
+    @DeleteMapping("/{commentId}/like")
+    public ResponseEntity<?> removeLike(@PathVariable("commentId") Long commentId){
+        String userId = authService.getCurrentUserId();
 
-        boolean isLiked = commentService.toggleLike(user, commentId);
+        boolean isLiked = commentService.setLike(userId, commentId, false);
 
         Map<String, Object> responseBody = new HashMap<>();
         responseBody.put("isLiked", isLiked);
@@ -0,0 +1,24 @@
+package com.naukma.thesisbackend.controllers;
+
+/**
+ * bounds of pagination parameters accepted by controllers, requests outside of them are rejected with 400
+ */
+final class PageLimits {
+    /**
+     * maximal number of posts, comments or users in one page
+     */
+    static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * maximal number of ids in one page, ids are much cheaper than whole entities
+     */
+    static final int MAX_ID_PAGE_SIZE = 1000;
+
+    /**
+     * maximal number of reply levels nested into comment thread
+     */
+    static final int MAX_COMMENT_DEPTH = 10;
+
+    private PageLimits(){
+    }
+}
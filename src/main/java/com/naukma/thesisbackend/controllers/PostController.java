@@ -2,47 +2,62 @@ package com.naukma.thesisbackend.controllers;
 
 import com.naukma.thesisbackend.dtos.CommentDto;
 import com.naukma.thesisbackend.dtos.CommentRequestDto;
+import com.naukma.thesisbackend.dtos.CursorPageDto;
 import com.naukma.thesisbackend.dtos.PostDto;
 import com.naukma.thesisbackend.dtos.PostRequestDto;
 import com.naukma.thesisbackend.entities.Comment;
 import com.naukma.thesisbackend.entities.Post;
 import com.naukma.thesisbackend.entities.User;
-import com.naukma.thesisbackend.exceptions.AuthenticationFailedException;
 import com.naukma.thesisbackend.exceptions.ForbiddenException;
 import com.naukma.thesisbackend.services.AuthService;
 import com.naukma.thesisbackend.services.CommentService;
 import com.naukma.thesisbackend.services.PostService;
-import com.naukma.thesisbackend.services.UserService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
+@Validated
 @RequestMapping("api/v1/posts")
 public class PostController {
 
     private final PostService postService;
     private final CommentService commentService;
     private final AuthService authService;
-    private final UserService userService;
 
-    public PostController(PostService postService, CommentService commentService, AuthService authService, UserService userService){
+    public PostController(PostService postService, CommentService commentService, AuthService authService){
         this.postService = postService;
         this.commentService = commentService;
         this.authService = authService;
-        this.userService = userService;
     }
 
+    /**
+     * method for getting one post
+     * @param comments true if post has to contain comments
+     * @param commentsSize if present, only this number of top-level comment threads is returned, with cursor of the rest
+     * @param commentDepth number of reply levels included into comment threads, used with commentsSize
+     * @param repliesSize maximal number of replies included for every comment, used with commentsSize
+     */
     @GetMapping("/{postId}")
-    public ResponseEntity<PostDto> getOnePost(@PathVariable("postId") Long postId, @RequestParam(defaultValue = "true") boolean comments, @RequestParam(defaultValue = "true") boolean personalized){
+    public ResponseEntity<PostDto> getOnePost(@PathVariable("postId") Long postId,
+                                              @RequestParam(defaultValue = "true") boolean comments,
+                                              @RequestParam(defaultValue = "true") boolean personalized,
+                                              @RequestParam(required = false) @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer commentsSize,
+                                              @RequestParam(defaultValue = "2") @Min(0) @Max(PageLimits.MAX_COMMENT_DEPTH) Integer commentDepth,
+                                              @RequestParam(defaultValue = "3") @Min(0) @Max(PageLimits.MAX_PAGE_SIZE) Integer repliesSize){
         String userId = personalized?authService.getCurrentUserId():null;
 
-        var post = postService.getPostDto(postId, userId, comments);
+        var post = comments && commentsSize != null
+                ? postService.getPostDto(postId, userId, commentsSize, commentDepth, repliesSize)
+                : postService.getPostDto(postId, userId, comments);
         return ResponseEntity.ok().body(post);
     }
 
@@ -52,20 +67,58 @@ public class PostController {
     @GetMapping
     public ResponseEntity<Page<PostDto>> getFilteredPosts(@RequestParam(required = false) String authorId,
                                                        @RequestParam(required = false) List<Long> tagIds,
+                                                       @RequestParam(defaultValue = "ANY") String tagMode,
                                                        @RequestParam(required = false) LocalDateTime minDate,
                                                        @RequestParam(required = false) LocalDateTime maxDate,
                                                        @RequestParam(required = false) String title,
                                                        @RequestParam(defaultValue = "postedDate") String sortBy,
                                                        @RequestParam(defaultValue = "DESC") String sortDirection,
-                                                       @RequestParam(defaultValue = "0") Integer page,
-                                                       @RequestParam(defaultValue = "10") Integer size) {
+                                                       @RequestParam(defaultValue = "0") @Min(0) Integer page,
+                                                       @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer size) {
 
         String userId = authService.getCurrentUserId();
-        Page<PostDto> posts = postService.getFilteredPosts(authorId, tagIds, minDate, maxDate, title,
+        Page<PostDto> posts = postService.getFilteredPosts(authorId, tagIds, tagMode, minDate, maxDate, title,
                 sortBy, sortDirection, page, size, userId);
         return new ResponseEntity<>(posts, HttpStatus.OK);
     }
 
+    /**
+     * endpoint for getting filtered posts with keyset (cursor) pagination.
+     * It is preferred over {@link #getFilteredPosts} for infinite scrolling, since its cost doesn't grow with depth of page
+     * @param cursor value of nextCursor from previous page, absent for the first page
+     * @return posts sorted by date of creation with cursor of the next page
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<CursorPageDto<PostDto>> getPostFeed(@RequestParam(required = false) String authorId,
+                                                              @RequestParam(required = false) List<Long> tagIds,
+                                                              @RequestParam(defaultValue = "ANY") String tagMode,
+                                                              @RequestParam(required = false) LocalDateTime minDate,
+                                                              @RequestParam(required = false) LocalDateTime maxDate,
+                                                              @RequestParam(required = false) String title,
+                                                              @RequestParam(defaultValue = "DESC") String sortDirection,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer size) {
+
+        String userId = authService.getCurrentUserId();
+        CursorPageDto<PostDto> posts = postService.getPostFeed(authorId, tagIds, tagMode, minDate, maxDate, title,
+                sortDirection, cursor, size, userId);
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
+    /**
+     * endpoint for ranked full-text search of posts by their title and content
+     * @param q searched words, all of them must be present in post
+     * @return page of posts, from the most relevant one
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Page<PostDto>> searchPosts(@RequestParam String q,
+                                                     @RequestParam(defaultValue = "0") @Min(0) Integer page,
+                                                     @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer size) {
+
+        String userId = authService.getCurrentUserId();
+        return ResponseEntity.ok(postService.searchPosts(q, page, size, userId));
+    }
+
     /**
      * method for creating new post
      * it gets author from authorization for safety reasons
@@ -73,12 +126,9 @@ public class PostController {
      */
     @PostMapping
     public ResponseEntity<PostDto> createPost(@RequestBody PostRequestDto postRequestDto){
-        String userId = authService.getCurrentUserId();
-
-        User author = userService.getUserById(userId)
-                .orElseThrow(()->new AuthenticationFailedException("User not found"));
+        User author = authService.getCurrentUserReference();
 
-        PostDto postDto = postService.createPost(author, postRequestDto);
+        PostDto postDto = postService.createPost(author, authService.getCurrentUserNickname(), postRequestDto);
         return ResponseEntity.status(HttpStatus.CREATED).body(postDto);
     }
 
@@ -115,10 +165,41 @@ public class PostController {
     public ResponseEntity<?> toggleLike(@PathVariable("postId") Long postId){
         String userId = authService.getCurrentUserId();
 
-        User user = userService.getUserById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
+        boolean isLiked = postService.toggleLike(userId, postId);
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("isLiked", isLiked);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
+    /**
+     * method for setting like. Unlike toggling, repeated requests have the same result
+     * @param postId id of post to like
+     * @return isLiked with value true
+     */
+    @PutMapping("/{postId}/like")
+    public ResponseEntity<?> setLike(@PathVariable("postId") Long postId){
+        String userId = authService.getCurrentUserId();
+
+        boolean isLiked = postService.setLike(userId, postId, true);
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("isLiked", isLiked);
+
+        return ResponseEntity.ok(responseBody);
+    }
+
+    /**
+     * method for removing like. Unlike toggling, repeated requests have the same result
+     * @param postId id of liked post
+     * @return isLiked with value false
+     */
+    @DeleteMapping("/{postId}/like")
+    public ResponseEntity<?> removeLike(@PathVariable("postId") Long postId){
+        String userId = authService.getCurrentUserId();
 
-        boolean isLiked = postService.toggleLike(user, postId);
+        boolean isLiked = postService.setLike(userId, postId, false);
 
         Map<String, Object> responseBody = new HashMap<>();
         responseBody.put("isLiked", isLiked);
@@ -138,6 +219,27 @@ public class PostController {
         return ResponseEntity.ok(postService.getPostCommentTree(postId, userId));
     }
 
+    /**
+     * method for getting comments of post page by page.
+     * Replies are nested only down to specified depth, the rest of them can be loaded with their cursors
+     * @param postId id of post
+     * @param cursor value of nextCursor from previous page, absent for the first page
+     * @param size number of top-level comments in page
+     * @param depth number of reply levels to include
+     * @param repliesSize maximal number of replies included for every comment
+     * @return page of comment threads
+     */
+    @GetMapping("/{postId}/comments/threads")
+    public ResponseEntity<CursorPageDto<CommentDto>> getCommentThreadsOfPost(@PathVariable("postId") Long postId,
+                                                                             @RequestParam(required = false) String cursor,
+                                                                             @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer size,
+                                                                             @RequestParam(defaultValue = "2") @Min(0) @Max(PageLimits.MAX_COMMENT_DEPTH) Integer depth,
+                                                                             @RequestParam(defaultValue = "3") @Min(0) @Max(PageLimits.MAX_PAGE_SIZE) Integer repliesSize){
+        String userId = authService.getCurrentUserId();
+
+        return ResponseEntity.ok(postService.getPostCommentThreads(postId, cursor, size, depth, repliesSize, userId));
+    }
+
 
     /**
      * method for creating comment
@@ -149,11 +251,7 @@ public class PostController {
     public ResponseEntity<CommentDto> createComment(@PathVariable("postId") Long postId,
                                                     @RequestParam(name = "replyTo", required = false) Long replyTo,
                                                     @RequestBody CommentRequestDto commentRequestDto){
-        String userId = authService.getCurrentUserId();
-
-        User user = userService
-                .getUserById(userId)
-                .orElseThrow(()->new EntityNotFoundException("No such user"));
+        User user = authService.getCurrentUserReference();
 
         Post post = postService
                 .getPostById(postId)
@@ -1,8 +1,10 @@
 package com.naukma.thesisbackend.controllers;
 
+import com.naukma.thesisbackend.cache.AvatarCache.CachedAvatar;
+import com.naukma.thesisbackend.dtos.CursorPageDto;
 import com.naukma.thesisbackend.dtos.PostDto;
+import com.naukma.thesisbackend.dtos.UserAutocompleteDto;
 import com.naukma.thesisbackend.dtos.UserBasicInfoDto;
-import com.naukma.thesisbackend.entities.Post;
 import com.naukma.thesisbackend.entities.User;
 import com.naukma.thesisbackend.exceptions.AuthenticationFailedException;
 import com.naukma.thesisbackend.services.AuthService;
@@ -10,20 +12,25 @@ import com.naukma.thesisbackend.services.AvatarService;
 import com.naukma.thesisbackend.services.PostService;
 import com.naukma.thesisbackend.services.UserService;
 import jakarta.persistence.EntityNotFoundException;
-import org.springframework.core.io.ByteArrayResource;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Comparator;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
 @RestController
+@Validated
 @RequestMapping("api/v1/users")
 public class UserController {
 
@@ -32,6 +39,16 @@ public class UserController {
     private final PostService postService;
     private final AuthService authService;
 
+    /**
+     * number of post ids, included into basic info of user
+     */
+    private static final int PROFILE_POST_IDS_SIZE = 20;
+
+    /**
+     * time for which clients may use avatar without revalidation. It is short, since user can replace avatar
+     */
+    @Value("${custom.avatar-cache.max-age-seconds}")
+    private long avatarMaxAgeSeconds;
 
     public UserController(AvatarService avatarService, UserService userService, PostService postService, AuthService authService){
         this.avatarService = avatarService;
@@ -41,27 +58,28 @@ public class UserController {
     }
 
     /**
-     * method for getting avatar of specific user
+     * method for getting avatar of specific user.
+     * Response has hash of image as ETag, so repeated requests with If-None-Match get status 304 without image.
+     * Clients should prefer avatarUrl of user, which can be cached without revalidation
      * @param userId id of user
+     * @param size requested size of image in pixels. Square thumbnail of the nearest larger size is returned,
+     *             or original image if there is no such thumbnail
      * @return user avatar as resource
      * @throws IOException if problem occured with reading data
      */
     @GetMapping("/{userId}/avatar")
-    public ResponseEntity<Resource> getUserAvatar(@PathVariable String userId) throws IOException {
-        String avatar = userService.getUserById(userId)
-                .orElseThrow(()-> new EntityNotFoundException("User not found"))
-                .getAvatar();
-
-        byte[] imageBytes = avatarService.getImage(avatar);
-
-        if (imageBytes != null) {
-            ByteArrayResource resource = new ByteArrayResource(imageBytes);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_JPEG)
-                    .body(resource);
-        } else {
+    public ResponseEntity<Resource> getUserAvatar(@PathVariable String userId,
+                                                  @RequestParam(required = false) Integer size,
+                                                  ServletWebRequest webRequest) throws IOException {
+        String avatar = userService.getAvatarOfUser(userId);
+
+        CachedAvatar image = avatarService.getImage(avatar, size);
+        if (image == null) {
             return ResponseEntity.notFound().build();
         }
+
+        return AvatarController.imageResponse(image,
+                CacheControl.maxAge(Duration.ofSeconds(avatarMaxAgeSeconds)).cachePublic(), webRequest);
     }
 
     /**
@@ -88,14 +106,13 @@ public class UserController {
         String prevAvatar = user.getAvatar();
 
         user.setAvatar(newAvatar);
+        userService.save(user);
 
-        //if user already had avatar, it is deleted from file system
-        if(prevAvatar!=null){
-            avatarService.deleteImage(user.getAvatar());
+        //if user already had avatar, it is deleted from file system, after user stops referencing it
+        if(prevAvatar!=null && !prevAvatar.equals(newAvatar)){
+            avatarService.deleteImage(prevAvatar);
         }
 
-        userService.save(user);
-
         return ResponseEntity.ok().body(null);
     }
 
@@ -114,9 +131,11 @@ public class UserController {
 
         //if user already had avatar, it is deleted from file system
         if(user.getAvatar()!=null){
-            avatarService.deleteImage(user.getAvatar());
+            String avatar = user.getAvatar();
             user.setAvatar(null);
             userService.save(user);
+            //image is deleted only after user stops referencing it, since other users may have the same image
+            avatarService.deleteImage(avatar);
             return ResponseEntity.ok().body(null);
         }
         else{
@@ -124,6 +143,18 @@ public class UserController {
         }
     }
 
+    /**
+     * method for suggesting users while typing part of their id or nickname
+     * @param q part of user id or nickname
+     * @param limit maximal number of suggested users
+     * @return matched users, best matches first
+     */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<UserAutocompleteDto>> autocompleteUsers(@RequestParam String q,
+                                                                       @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer limit){
+        return ResponseEntity.ok(userService.autocomplete(q, limit));
+    }
+
     /**
      * method for getting basic, not sensitive information of user available for everyone
      * @param userId id of user
@@ -131,11 +162,28 @@ public class UserController {
      */
     @GetMapping("/{userId}")
     public ResponseEntity<UserBasicInfoDto> getUserBasicInfo(@PathVariable String userId){
-        return ResponseEntity.ok(
-                userService
-                        .getUserById(userId)
-                        .orElseThrow(()-> new EntityNotFoundException("No such user"))
-                        .toUserBasicInfoDto());
+        User user = userService
+                .getUserById(userId)
+                .orElseThrow(()-> new EntityNotFoundException("No such user"));
+
+        CursorPageDto<Long> postIds = postService.getPostIdsAuthoredBy(userId, null, PROFILE_POST_IDS_SIZE);
+        return ResponseEntity.ok(user.toUserBasicInfoDto(AvatarController.urlOf(user.getAvatar()), postIds.content(), postIds.nextCursor()));
+    }
+
+    /**
+     * method for getting ids of posts of user page by page, newest first
+     * @param userId id of author
+     * @param cursor value of postIdsCursor of user info or nextCursor from previous page
+     * @param size number of ids in page
+     * @return page of post ids with cursor of the next page
+     */
+    @GetMapping("/{userId}/post-ids")
+    public ResponseEntity<CursorPageDto<Long>> getPostIdsAuthoredBy(@PathVariable String userId,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(defaultValue = "100") @Min(1) @Max(PageLimits.MAX_ID_PAGE_SIZE) Integer size){
+        if(!userService.exists(userId)) throw new EntityNotFoundException("No such user");
+
+        return ResponseEntity.ok(postService.getPostIdsAuthoredBy(userId, cursor, size));
     }
 
     /**
@@ -169,35 +217,36 @@ public class UserController {
     }
 
     /**
-     * method for getting ids of liked posts for user
+     * method for getting liked posts of user page by page, the most recently liked first
      * information about liked posts is sensitive, so method can be accessed only by the user, who has same userId as specified in path
      * @param userId id of user
-     * @return ids of liked posts
+     * @param cursor value of nextCursor from previous page, absent for the first page
+     * @param size number of posts in page
+     * @return page of liked posts with cursor of the next page
      */
     @GetMapping(value = "/{userId}/liked-posts")
-    public ResponseEntity<List<PostDto>> getUserLikedPosts(@PathVariable String userId){
-        List<Post> likedPosts = userService.getLikedPostsByUserId(userId);
-
-        List<PostDto> likedPostDtos = likedPosts
-                .stream()
-                .sorted(Comparator.comparing(Post::getPostedDate).reversed())
-                .map(post->postService.postToPostDto(post, userId, false))
-                .toList();
+    public ResponseEntity<CursorPageDto<PostDto>> getUserLikedPosts(@PathVariable String userId,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer size){
+        if(!userService.exists(userId)) throw new EntityNotFoundException("No such user");
 
-        return ResponseEntity.ok(likedPostDtos);
+        return ResponseEntity.ok(postService.getLikedPosts(userId, cursor, size));
     }
 
+    /**
+     * method for getting posts of author page by page, newest first
+     * @param userId id of author
+     * @param cursor value of nextCursor from previous page, absent for the first page
+     * @param size number of posts in page
+     * @return page of posts with cursor of the next page
+     */
     @GetMapping(value = "/{userId}/posts")
-    public ResponseEntity<List<PostDto>> getPostsAuthoredBy(@PathVariable String userId){
-        List<Post> posts = userService.getPostsAuthoredBy(userId);
-
-        List<PostDto> postDtos = posts
-                .stream()
-                .sorted(Comparator.comparing(Post::getPostedDate).reversed())
-                .map(post->postService.postToPostDto(post, userId, false))
-                .toList();
+    public ResponseEntity<CursorPageDto<PostDto>> getPostsAuthoredBy(@PathVariable String userId,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "10") @Min(1) @Max(PageLimits.MAX_PAGE_SIZE) Integer size){
+        if(!userService.exists(userId)) throw new EntityNotFoundException("No such user");
 
-        return ResponseEntity.ok(postDtos);
+        return ResponseEntity.ok(postService.getPostsAuthoredBy(userId, cursor, size, authService.getCurrentUserId()));
     }
 
     /**
@@ -0,0 +1,16 @@
+package com.naukma.thesisbackend.dtos;
+
+/**
+ * result of collection of unused avatar images
+ * @param scannedFiles number of files in avatar directory
+ * @param deletedFiles number of deleted images, thumbnails and unfinished uploads
+ * @param reclaimedBytes total size of deleted files
+ * @param millis duration of collection
+ */
+public record AvatarSweepReportDto(
+        long scannedFiles,
+        long deletedFiles,
+        long reclaimedBytes,
+        long millis
+) {
+}
@@ -6,6 +6,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * comment with its nested replies
+ * @param replies loaded replies of comment, can contain only part of them
+ * @param replyCount total number of direct replies of comment
+ * @param repliesCursor cursor for loading the rest of replies, null if all of them or none of them are loaded
+ */
 public record CommentDto(
     Long commentId,
     Long postId,
@@ -14,6 +20,8 @@ public record CommentDto(
     String authorNickname,
     boolean edited,
     List<CommentDto> replies,
+    int replyCount,
+    String repliesCursor,
     Long replyTo,
     int likes,
     boolean isLiked,
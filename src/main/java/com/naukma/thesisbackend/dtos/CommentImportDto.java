@@ -0,0 +1,20 @@
+package com.naukma.thesisbackend.dtos;
+
+import java.time.LocalDateTime;
+
+/**
+ * comment of imported post
+ * @param commentId id of comment in imported data, used only for replies inside of the same post.
+ *                  New id is generated on import
+ * @param replyTo id of replied comment in imported data, null for top-level comments
+ * @param authorUserId id of existing user, who is author of comment
+ * @param commentedDate date of comment creation, current date if absent
+ */
+public record CommentImportDto(
+        Long commentId,
+        Long replyTo,
+        String content,
+        String authorUserId,
+        LocalDateTime commentedDate
+) {
+}
@@ -0,0 +1,15 @@
+package com.naukma.thesisbackend.dtos;
+
+import java.util.List;
+
+/**
+ * page of elements retrieved with keyset (cursor) pagination.
+ * Unlike {@link org.springframework.data.domain.Page Page}, it does not contain total count of elements
+ * @param content elements of page
+ * @param nextCursor opaque cursor for querying next page, null if this page is the last one
+ */
+public record CursorPageDto<T>(
+        List<T> content,
+        String nextCursor
+) {
+}
@@ -0,0 +1,43 @@
+package com.naukma.thesisbackend.dtos;
+
+import java.util.List;
+
+/**
+ * result of import
+ * @param posts total number of imported posts
+ * @param comments total number of imported comments
+ * @param failedLines number of lines which were not imported
+ * @param millis duration of import
+ * @param chunks results of chunks, each of them committed separately
+ */
+public record ImportReportDto(
+        long posts,
+        long comments,
+        long failedLines,
+        long millis,
+        List<ChunkReport> chunks
+) {
+
+    /**
+     * result of one chunk of lines
+     * @param fromLine number of the first line of chunk, starting from 1
+     * @param toLine number of the last line of chunk
+     * @param posts number of imported posts
+     * @param comments number of imported comments
+     * @param failedLines number of lines, which were not imported
+     * @param millis time of writing chunk to database
+     * @param postsPerSecond throughput of chunk
+     * @param errors errors of lines, which were skipped, or error of whole chunk, if it was rolled back
+     */
+    public record ChunkReport(
+            long fromLine,
+            long toLine,
+            int posts,
+            int comments,
+            int failedLines,
+            long millis,
+            double postsPerSecond,
+            List<String> errors
+    ) {
+    }
+}
@@ -15,6 +15,7 @@ public record PostDto(
     LocalDateTime postedDate,
     int likes,
     List<CommentDto> comments,
+    String commentsCursor,
     boolean isLiked,
     String authorUserId,
     String authorNickname,
@@ -0,0 +1,28 @@
+package com.naukma.thesisbackend.dtos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.naukma.thesisbackend.entities.Tag;
+import com.naukma.thesisbackend.projections.CommentSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * post as one line of export
+ * @param comments flat list of all comments of post, oldest first, absent if comments are not exported
+ */
+public record PostExportDto(
+    Long postId,
+    String title,
+    String content,
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    LocalDateTime postedDate,
+    int likes,
+    String authorUserId,
+    String authorNickname,
+    List<Tag> tags,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    List<CommentSummary> comments
+) {
+}
@@ -0,0 +1,21 @@
+package com.naukma.thesisbackend.dtos;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * post as one line of import
+ * @param postedDate date of post creation, current date if absent
+ * @param authorUserId id of existing user, who is author of post
+ * @param tags ids of tags of post, unknown ids are ignored
+ * @param comments comments of post, replied comments must go before their replies
+ */
+public record PostImportDto(
+        String title,
+        String content,
+        LocalDateTime postedDate,
+        String authorUserId,
+        List<Long> tags,
+        List<CommentImportDto> comments
+) {
+}
@@ -0,0 +1,12 @@
+package com.naukma.thesisbackend.dtos;
+
+/**
+ * user suggested while typing part of user id or nickname
+ * @param userId id of user
+ * @param nickname nickname of user
+ */
+public record UserAutocompleteDto(
+        String userId,
+        String nickname
+) {
+}
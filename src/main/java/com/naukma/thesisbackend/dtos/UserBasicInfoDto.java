@@ -8,13 +8,23 @@ import java.util.List;
  * Dto for getting non-sensitive user info from server
  * @param userId id of user
  * @param nickname nickname of user
- * @param postIds identifiers of posts written by this user
+ * @param avatarUrl immutable url of avatar image, null if user has no avatar
+ * @param postCount number of posts written by this user
+ * @param commentCount number of comments written by this user
+ * @param likesReceived total number of likes of posts written by this user
+ * @param postIds identifiers of the newest posts written by this user
+ * @param postIdsCursor cursor for loading the rest of post ids from /users/{userId}/post-ids, null if all of them are here
  * @param registeredDate exact time when user was registered (generated automatically)
  */
 public record UserBasicInfoDto (
         String userId,
         String nickname,
+        String avatarUrl,
+        int postCount,
+        int commentCount,
+        int likesReceived,
         List<Long> postIds,
+        String postIdsCursor,
         LocalDateTime registeredDate
 ){
 
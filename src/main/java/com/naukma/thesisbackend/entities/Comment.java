@@ -4,7 +4,7 @@ package com.naukma.thesisbackend.entities;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,20 +13,29 @@ import java.util.List;
 
 @Getter
 @Setter
-@Table(name = "comment")
+@Table(name = "comment", indexes = {
+        @Index(name = "idx_comment_post_date", columnList = "post_id, commented_date"),
+        @Index(name = "idx_comment_reply_to_date", columnList = "reply_to_comment_id, commented_date")
+})
 @Entity
 public class Comment {
 
+    /**
+     * ids are taken from sequence in pools, so inserts of comments can be batched
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "comment_seq")
+    @SequenceGenerator(name = "comment_seq", sequenceName = "comment_seq", allocationSize = 50)
     @Column(name = "comment_id")
     private Long commentId;
 
     @Column(name = "content", nullable = false, columnDefinition = "TEXT")
     private String content;
 
+    /**
+     * date of comment creation. It is set on insert, unless it was specified (for example, by import)
+     */
     @Column(name = "commented_date")
-    @CreationTimestamp
     private LocalDateTime commentedDate;
 
 
@@ -38,6 +47,14 @@ public class Comment {
     @OneToMany(mappedBy = "comment", orphanRemoval = true)
     private List<CommentLike> commentLikes = new ArrayList<>();
 
+    /**
+     * number of likes of comment. It is never written by entity itself,
+     * only by atomic update queries executed together with inserting/deleting {@link CommentLike}
+     */
+    @ColumnDefault("0")
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false)
+    private int likeCount;
+
     @ManyToOne
     @JoinColumn(referencedColumnName = "comment_id", nullable = true)
 //    @JsonBackReference
@@ -61,4 +78,8 @@ public class Comment {
     @Column(name = "edited")
     private boolean edited = false;
 
+    @PrePersist
+    private void fillCommentedDate() {
+        if(commentedDate == null) commentedDate = LocalDateTime.now();
+    }
 }
\ No newline at end of file
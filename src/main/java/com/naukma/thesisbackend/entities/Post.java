@@ -3,7 +3,7 @@ package com.naukma.thesisbackend.entities;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -15,11 +15,20 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
-@Table(name = "post")
+@Table(name = "post", indexes = {
+        @Index(name = "idx_post_posted_date_id", columnList = "posted_date, post_id"),
+        @Index(name = "idx_post_user_posted_date_id", columnList = "user_id, posted_date DESC, post_id DESC"),
+        @Index(name = "idx_post_trending_score_id", columnList = "trending_score DESC, post_id DESC")
+})
 public class Post {
 
+    /**
+     * ids are taken from sequence in pools, so inserts of posts can be batched.
+     * Sequence is aligned with existing ids by {@link com.naukma.thesisbackend.config.SequenceAlignmentRunner}
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_seq")
+    @SequenceGenerator(name = "post_seq", sequenceName = "post_seq", allocationSize = 50)
     @Column(name = "post_id")
     private Long postId;
 
@@ -36,10 +45,28 @@ public class Post {
 
     private String content;
 
+    /**
+     * date of post creation. It is set on insert, unless it was specified (for example, by import)
+     */
     @Column(name = "posted_date")
-    @CreationTimestamp
     private LocalDateTime postedDate;
 
+    /**
+     * number of likes of post. It is never written by entity itself,
+     * only by atomic update queries executed together with inserting/deleting {@link PostLike}
+     */
+    @ColumnDefault("0")
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false)
+    private int likeCount;
+
+    /**
+     * popularity of post, where recent likes weigh more than old ones. Every like adds 1 to it,
+     * and all scores are periodically decayed by {@link com.naukma.thesisbackend.services.TrendingScoreService}
+     */
+    @ColumnDefault("0")
+    @Column(name = "trending_score", nullable = false, insertable = false, updatable = false)
+    private double trendingScore;
+
     /**
      * likes of post
      */
@@ -69,4 +96,9 @@ public class Post {
             joinColumns = @JoinColumn(name = "post_id"),
             inverseJoinColumns = @JoinColumn(name = "tag_id"))
     private List<Tag> tags = new ArrayList<>();
+
+    @PrePersist
+    private void fillPostedDate() {
+        if(postedDate == null) postedDate = LocalDateTime.now();
+    }
 }
@@ -18,7 +18,9 @@ import java.time.LocalDateTime;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "post_like")
+@Table(name = "post_like", indexes = {
+        @Index(name = "idx_post_like_user_date_post", columnList = "user_id, like_date DESC, post_id DESC")
+})
 public class PostLike {
     @EmbeddedId
     private PostLikeKey id;
@@ -9,6 +9,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
@@ -20,7 +21,9 @@ import java.util.stream.Collectors;
 @Getter
 @Setter
 @Entity
-@Table(name = "app-user")
+@Table(name = "app-user", indexes = {
+        @Index(name = "idx_user_avatar", columnList = "avatar")
+})
 @NoArgsConstructor
 public class User {
 
@@ -66,6 +69,15 @@ public class User {
     @JsonIgnore
     private String avatar;
 
+    /**
+     * version of access tokens of user. Tokens issued with older version are rejected,
+     * so incrementing it signs user out on all devices. Written only by atomic update query
+     */
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false, insertable = false, updatable = false)
+    @JsonIgnore
+    private int tokenVersion;
+
     /**
      * password of user
      */
@@ -106,15 +118,45 @@ public class User {
     @CreationTimestamp
     private LocalDateTime registeredDate;
 
+    /**
+     * number of posts of user. Counters of user are never written by entity itself,
+     * only by atomic update queries executed together with creating/deleting posts, comments and likes
+     */
+    @ColumnDefault("0")
+    @Column(name = "post_count", nullable = false, insertable = false, updatable = false)
+    private int postCount;
+
+    /**
+     * number of comments of user
+     */
+    @ColumnDefault("0")
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false)
+    private int commentCount;
+
+    /**
+     * total number of likes of user's posts
+     */
+    @ColumnDefault("0")
+    @Column(name = "likes_received", nullable = false, insertable = false, updatable = false)
+    private int likesReceived;
+
     /**
      * method for mapping {@link User User} object into {@link UserBasicInfoDto UserBasicInfoDto} record
+     * @param avatarUrl url of avatar image, null if user has no avatar
+     * @param postIds ids of the newest posts of user
+     * @param postIdsCursor cursor for loading the rest of post ids, null if there are no more posts
      * @return {@link UserBasicInfoDto UserBasicInfoDto} record
      */
-    public UserBasicInfoDto toUserBasicInfoDto(){
+    public UserBasicInfoDto toUserBasicInfoDto(String avatarUrl, List<Long> postIds, String postIdsCursor){
         return new UserBasicInfoDto(
                 this.getUserId(),
                 this.getNickname(),
-                this.getPosts().stream().map(Post::getPostId).toList(),
+                avatarUrl,
+                this.getPostCount(),
+                this.getCommentCount(),
+                this.getLikesReceived(),
+                postIds,
+                postIdsCursor,
                 this.getRegisteredDate()
         );
     }
@@ -0,0 +1,9 @@
+package com.naukma.thesisbackend.enums;
+
+/**
+ * enum, which represents kind of liked entity
+ */
+public enum LikeTarget {
+    POST,
+    COMMENT
+}
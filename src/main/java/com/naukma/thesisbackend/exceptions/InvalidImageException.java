@@ -0,0 +1,11 @@
+package com.naukma.thesisbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImageException extends RuntimeException {
+    public InvalidImageException(String ex) {
+        super(ex);
+    }
+}
@@ -0,0 +1,52 @@
+package com.naukma.thesisbackend.pagination;
+
+import com.naukma.thesisbackend.exceptions.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * position in a list sorted by (date, id), used for keyset pagination.
+ * It is sent to client as opaque string, so its format can be changed without breaking clients
+ * @param date date of last returned element
+ * @param id id of last returned element, used as tie-breaker for elements with the same date
+ */
+public record KeysetCursor(
+        LocalDateTime date,
+        Long id
+) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * encodes cursor into url-safe opaque string
+     * @return encoded cursor
+     */
+    public String encode(){
+        String raw = date.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * decodes cursor received from client
+     * @param cursor encoded cursor, can be null
+     * @return decoded cursor or null if cursor is null or empty
+     * @throws InvalidCursorException if cursor is malformed
+     */
+    public static KeysetCursor decode(String cursor){
+        if(cursor == null || cursor.isEmpty()) return null;
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = raw.lastIndexOf(SEPARATOR);
+
+            return new KeysetCursor(
+                    LocalDateTime.parse(raw.substring(0, separatorIndex)),
+                    Long.parseLong(raw.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.naukma.thesisbackend.projections;
+
+import java.time.LocalDateTime;
+
+/**
+ * flat projection of comment with its author, retrieved without loading {@link com.naukma.thesisbackend.entities.Comment Comment} entity
+ * @param commentId id of comment
+ * @param postId id of commented post
+ * @param replyTo id of comment this comment replies to, null for top-level comments
+ * @param content content of comment
+ * @param authorUserId id of comment author
+ * @param authorNickname nickname of comment author
+ * @param edited true if comment was edited
+ * @param likeCount number of likes of comment
+ * @param commentedDate date of comment creation
+ */
+public record CommentSummary(
+        Long commentId,
+        Long postId,
+        Long replyTo,
+        String content,
+        String authorUserId,
+        String authorNickname,
+        boolean edited,
+        int likeCount,
+        LocalDateTime commentedDate
+) {
+}
@@ -0,0 +1,24 @@
+package com.naukma.thesisbackend.projections;
+
+import java.time.LocalDateTime;
+
+/**
+ * flat projection of post with its author, retrieved without loading {@link com.naukma.thesisbackend.entities.Post Post} entity
+ * @param postId id of post
+ * @param title title of post
+ * @param content content of post
+ * @param postedDate date of post creation
+ * @param likeCount number of likes of post
+ * @param authorUserId id of post author
+ * @param authorNickname nickname of post author
+ */
+public record PostSummary(
+        Long postId,
+        String title,
+        String content,
+        LocalDateTime postedDate,
+        int likeCount,
+        String authorUserId,
+        String authorNickname
+) {
+}
@@ -0,0 +1,15 @@
+package com.naukma.thesisbackend.projections;
+
+import com.naukma.thesisbackend.enums.UserRole;
+
+/**
+ * fields of user, against which claims of its access tokens are checked, retrieved without loading
+ * {@link com.naukma.thesisbackend.entities.User User} entity
+ * @param tokenVersion current version of access tokens of user
+ * @param role current role of user
+ */
+public record TokenState(
+        int tokenVersion,
+        UserRole role
+) {
+}
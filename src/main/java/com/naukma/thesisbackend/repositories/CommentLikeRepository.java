@@ -3,11 +3,20 @@ package com.naukma.thesisbackend.repositories;
 import com.naukma.thesisbackend.entities.*;
 import com.naukma.thesisbackend.entities.keys.CommentLikeKey;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface CommentLikeRepository extends JpaRepository<CommentLike, CommentLikeKey> {
-    Optional<CommentLike> findByUserAndComment(User user, Comment comment);
-}
\ No newline at end of file
+    /**
+     * finds all comments under the post which are liked by user, in one query
+     * @param userId id of user
+     * @param postId id of post
+     * @return ids of liked comments
+     */
+    @Query("SELECT cl.id.commentId FROM CommentLike cl WHERE cl.id.userId = :userId AND cl.comment.post.postId = :postId")
+    Set<Long> findLikedCommentIdsOfPost(@Param("userId") String userId, @Param("postId") Long postId);
+}
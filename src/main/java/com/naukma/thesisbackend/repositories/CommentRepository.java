@@ -1,13 +1,166 @@
 package com.naukma.thesisbackend.repositories;
 
 import com.naukma.thesisbackend.entities.Comment;
+import com.naukma.thesisbackend.projections.CommentSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     Optional<Comment> findCommentByCommentId(Long commentId);
+
+    /**
+     * retrieves all comments of post as flat projections in one query, newest first
+     * @param postId id of post
+     * @return comments of post, including replies
+     */
+    @Query("SELECT new com.naukma.thesisbackend.projections.CommentSummary(" +
+            "c.commentId, c.post.postId, r.commentId, c.content, a.userId, a.nickname, c.edited, c.likeCount, c.commentedDate) " +
+            "FROM Comment c JOIN c.commentAuthor a LEFT JOIN c.replyTo r " +
+            "WHERE c.post.postId = :postId " +
+            "ORDER BY c.commentedDate DESC, c.commentId DESC")
+    List<CommentSummary> findCommentSummariesOfPost(@Param("postId") Long postId);
+
+    String COMMENT_SUMMARY = "SELECT new com.naukma.thesisbackend.projections.CommentSummary(" +
+            "c.commentId, c.post.postId, r.commentId, c.content, a.userId, a.nickname, c.edited, c.likeCount, c.commentedDate) " +
+            "FROM Comment c JOIN c.commentAuthor a LEFT JOIN c.replyTo r ";
+
+    /**
+     * retrieves one comment as flat projection
+     * @param commentId id of comment
+     * @return comment, or empty optional if there is no such comment
+     */
+    @Query(COMMENT_SUMMARY + "WHERE c.commentId = :commentId")
+    Optional<CommentSummary> findCommentSummary(@Param("commentId") Long commentId);
+
+    /**
+     * retrieves all direct replies of several comments at once. Used for loading subtree of comment level by level
+     * @param commentIds ids of replied comments
+     * @return replies, newest first
+     */
+    @Query(COMMENT_SUMMARY +
+            "WHERE r.commentId IN :commentIds " +
+            "ORDER BY c.commentedDate DESC, c.commentId DESC")
+    List<CommentSummary> findAllReplySummaries(@Param("commentIds") Collection<Long> commentIds);
+
+    /**
+     * keyset query for top-level comments of post, newest first
+     */
+    @Query(COMMENT_SUMMARY +
+            "WHERE c.post.postId = :postId AND r IS NULL " +
+            "AND (:cursorDate IS NULL OR c.commentedDate < :cursorDate " +
+            "OR (c.commentedDate = :cursorDate AND c.commentId < :cursorId)) " +
+            "ORDER BY c.commentedDate DESC, c.commentId DESC")
+    List<CommentSummary> findTopLevelCommentSummaries(@Param("postId") Long postId,
+                                                      @Param("cursorDate") LocalDateTime cursorDate,
+                                                      @Param("cursorId") Long cursorId,
+                                                      Pageable pageable);
+
+    /**
+     * keyset query for direct replies of comment, newest first
+     */
+    @Query(COMMENT_SUMMARY +
+            "WHERE r.commentId = :commentId " +
+            "AND (:cursorDate IS NULL OR c.commentedDate < :cursorDate " +
+            "OR (c.commentedDate = :cursorDate AND c.commentId < :cursorId)) " +
+            "ORDER BY c.commentedDate DESC, c.commentId DESC")
+    List<CommentSummary> findReplySummaries(@Param("commentId") Long commentId,
+                                            @Param("cursorDate") LocalDateTime cursorDate,
+                                            @Param("cursorId") Long cursorId,
+                                            Pageable pageable);
+
+    /**
+     * retrieves newest direct replies of several comments at once, at most {@code limit} replies per comment
+     * @param commentIds ids of replied comments
+     * @param limit maximal number of replies of each comment
+     * @return replies, newest first
+     */
+    @Query(COMMENT_SUMMARY +
+            "WHERE c.commentId IN (" +
+            "SELECT ranked.id FROM (" +
+            "SELECT s.commentId AS id, ROW_NUMBER() OVER (PARTITION BY s.replyTo.commentId ORDER BY s.commentedDate DESC, s.commentId DESC) AS position " +
+            "FROM Comment s WHERE s.replyTo.commentId IN :commentIds) ranked " +
+            "WHERE ranked.position <= :limit) " +
+            "ORDER BY c.commentedDate DESC, c.commentId DESC")
+    List<CommentSummary> findLatestReplySummaries(@Param("commentIds") Collection<Long> commentIds,
+                                                  @Param("limit") long limit);
+
+    /**
+     * retrieves all comments of several posts in one query
+     * @param postIds ids of posts
+     * @return comments of posts, including replies, grouped by post and oldest first
+     */
+    @Query(COMMENT_SUMMARY +
+            "WHERE c.post.postId IN :postIds " +
+            "ORDER BY c.post.postId, c.commentedDate, c.commentId")
+    List<CommentSummary> findCommentSummariesOfPosts(@Param("postIds") Collection<Long> postIds);
+
+    /**
+     * counts direct replies of several comments in one query
+     * @param commentIds ids of comments
+     * @return pairs of comment id and number of its replies, comments without replies are absent
+     */
+    @Query("SELECT r.commentId, COUNT(c) FROM Comment c JOIN c.replyTo r WHERE r.commentId IN :commentIds GROUP BY r.commentId")
+    List<Object[]> countReplies(@Param("commentIds") Collection<Long> commentIds);
+
+    /**
+     * atomically changes like counter of comment
+     * @param commentId id of comment
+     * @param delta value to add to counter, 1 for new like and -1 for removed one
+     * @return number of updated comments (0 if there is no such comment)
+     */
+    @Modifying
+    @Query("UPDATE Comment c SET c.likeCount = c.likeCount + :delta WHERE c.commentId = :commentId")
+    int incrementLikeCount(@Param("commentId") Long commentId, @Param("delta") int delta);
+
+    /**
+     * subtracts likes of user from like counters of liked comments. Must be called before user is deleted,
+     * since its likes are deleted in cascade
+     * @param userId id of user
+     * @return number of updated comments
+     */
+    @Modifying
+    @Query(value = "UPDATE comment SET like_count = like_count - 1 " +
+            "WHERE comment_id IN (SELECT cl.comment_id FROM comment_like cl WHERE cl.user_id = :userId)", nativeQuery = true)
+    int decrementLikeCountsOfLiker(@Param("userId") String userId);
+
+    /**
+     * counts comments of other users, which are deleted in cascade together with user:
+     * comments under posts of user and replies to comments of user at any depth
+     * @param userId id of user
+     * @return pairs of id of comment author and number of its deleted comments
+     */
+    @Query(value = "WITH RECURSIVE deleted (comment_id, user_id) AS (" +
+            "SELECT c.comment_id, c.user_id FROM comment c JOIN post p ON p.post_id = c.post_id " +
+            "WHERE p.user_id = :userId OR c.user_id = :userId " +
+            "UNION " +
+            "SELECT r.comment_id, r.user_id FROM comment r JOIN deleted d ON r.reply_to_comment_id = d.comment_id) " +
+            "SELECT d.user_id, COUNT(DISTINCT d.comment_id) FROM deleted d WHERE d.user_id <> :userId GROUP BY d.user_id", nativeQuery = true)
+    List<Object[]> countCommentsOfOthersDeletedWithUser(@Param("userId") String userId);
+
+    /**
+     * recalculates like counters of comments with ids in specified range, if they differ from real number of likes
+     * @return number of repaired comments
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE comment c SET like_count = (SELECT COUNT(*) FROM comment_like cl WHERE cl.comment_id = c.comment_id) " +
+            "WHERE c.comment_id BETWEEN :fromId AND :toId " +
+            "AND c.like_count <> (SELECT COUNT(*) FROM comment_like cl WHERE cl.comment_id = c.comment_id)",
+            nativeQuery = true)
+    int reconcileLikeCounts(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT MAX(c.commentId) FROM Comment c")
+    Long findMaxCommentId();
 }
\ No newline at end of file
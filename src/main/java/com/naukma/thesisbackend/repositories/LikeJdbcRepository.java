@@ -0,0 +1,272 @@
+package com.naukma.thesisbackend.repositories;
+
+import com.naukma.thesisbackend.enums.LikeTarget;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * repository for writing likes of posts and comments with plain JDBC statements, bypassing entity loading
+ */
+@Repository
+public class LikeJdbcRepository {
+
+    /**
+     * maximal number of statements sent to database at once
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LikeJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * like set or removed by user
+     * @param userId id of user
+     * @param targetId id of liked post or comment
+     * @param liked true if like is set, false if removed
+     * @param likeDate date of like
+     */
+    public record LikeChange(String userId, Long targetId, boolean liked, LocalDateTime likeDate) {
+    }
+
+    /**
+     * sets like with one conditional statement
+     * @param target kind of liked entity
+     * @param userId id of user
+     * @param targetId id of liked post or comment
+     * @return true if like was inserted, false if it already exists or user or liked entity doesn't exist
+     */
+    public boolean insertLike(LikeTarget target, String userId, Long targetId) {
+        try {
+            return jdbcTemplate.update(Table.of(target).insertSql(),
+                    userId, Timestamp.valueOf(LocalDateTime.now()), targetId, userId, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            //same like was inserted concurrently
+            return false;
+        }
+    }
+
+    /**
+     * removes like with one statement
+     * @param target kind of liked entity
+     * @param userId id of user
+     * @param targetId id of liked post or comment
+     * @return true if like was deleted, false if it didn't exist
+     */
+    public boolean deleteLike(LikeTarget target, String userId, Long targetId) {
+        return jdbcTemplate.update(Table.of(target).deleteSql(), userId, targetId) > 0;
+    }
+
+    /**
+     * removes like, which date is read and locked before, since weight of like in score of liked entity depends on it
+     * @param target kind of liked entity
+     * @param userId id of user
+     * @param targetId id of liked post or comment
+     * @return date of deleted like, or null if it didn't exist
+     */
+    public @Nullable LocalDateTime deleteDatedLike(LikeTarget target, String userId, Long targetId) {
+        Table table = Table.of(target);
+        List<Timestamp> likeDates = jdbcTemplate.queryForList(table.likeDateSql(), Timestamp.class, userId, targetId);
+        if(likeDates.isEmpty() || jdbcTemplate.update(table.deleteSql(), userId, targetId) == 0) return null;
+
+        return likeDates.get(0).toLocalDateTime();
+    }
+
+    /**
+     * checks if like exists
+     * @param target kind of liked entity
+     * @param userId id of user
+     * @param targetId id of liked post or comment
+     * @return true if user liked post or comment
+     */
+    public boolean existsLike(LikeTarget target, String userId, Long targetId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(Table.of(target).existsSql(), Boolean.class, userId, targetId));
+    }
+
+    /**
+     * applies changes of likes in batches, in one transaction, and updates like counters accordingly.
+     * Likes which already exist (or are already absent), or whose user or target was deleted, are skipped
+     * @param target kind of liked entities
+     * @param changes changes of likes, at most one per user and target
+     * @param likeWeight current weight of like in score of liked entity by date of like
+     * @return changes of like counters by id of post or comment, only for counters which were changed
+     */
+    @Transactional
+    public Map<Long, Integer> applyLikeChanges(LikeTarget target, List<LikeChange> changes, ToDoubleFunction<LocalDateTime> likeWeight) {
+        Table table = Table.of(target);
+        List<LikeChange> setLikes = changes.stream().filter(LikeChange::liked).toList();
+        List<LikeChange> removedLikes = changes.stream().filter(change -> !change.liked()).toList();
+        Map<LikeKey, LocalDateTime> removedLikeDates = table.scoreColumn() != null ? findLikeDates(table, removedLikes) : Map.of();
+
+        int[] inserted = batchUpdate(table.insertSql(), setLikes, (ps, change) -> {
+            ps.setString(1, change.userId());
+            ps.setTimestamp(2, Timestamp.valueOf(change.likeDate()));
+            ps.setLong(3, change.targetId());
+            ps.setString(4, change.userId());
+            ps.setString(5, change.userId());
+        });
+        int[] deleted = batchUpdate(table.deleteSql(), removedLikes, (ps, change) -> {
+            ps.setString(1, change.userId());
+            ps.setLong(2, change.targetId());
+        });
+
+        //counters are changed only by likes, which were really inserted or deleted
+        Map<Long, Integer> deltas = new HashMap<>();
+        Map<Long, Double> scoreDeltas = new HashMap<>();
+        for(int i = 0; i < setLikes.size(); i++){
+            LikeChange like = setLikes.get(i);
+            if(inserted[i] > 0){
+                deltas.merge(like.targetId(), 1, Integer::sum);
+                scoreDeltas.merge(like.targetId(), likeWeight.applyAsDouble(like.likeDate()), Double::sum);
+            }
+        }
+        for(int i = 0; i < removedLikes.size(); i++){
+            LikeChange like = removedLikes.get(i);
+            if(deleted[i] > 0){
+                deltas.merge(like.targetId(), -1, Integer::sum);
+                if(table.scoreColumn() != null){
+                    LocalDateTime likeDate = removedLikeDates.get(new LikeKey(like.userId(), like.targetId()));
+                    scoreDeltas.merge(like.targetId(), -likeWeight.applyAsDouble(likeDate), Double::sum);
+                }
+            }
+        }
+
+        //set and removed likes cancel out in counter, but not in score, since their weights differ
+        batchUpdate(table.incrementSql(), deltas.entrySet(), (ps, delta) -> {
+            int index = 1;
+            ps.setInt(index++, delta.getValue());
+            if(table.scoreColumn() != null) ps.setDouble(index++, scoreDeltas.get(delta.getKey()));
+            ps.setLong(index, delta.getKey());
+        });
+        deltas.values().removeIf(delta -> delta == 0);
+        if(table.authorCounterColumn() != null){
+            batchUpdate(table.authorIncrementSql(), deltas.entrySet(), (ps, delta) -> {
+                ps.setInt(1, delta.getValue());
+                ps.setLong(2, delta.getKey());
+            });
+        }
+
+        return deltas;
+    }
+
+    /**
+     * subtracts weights of removed likes from trending scores of posts, in batches
+     * @param weights sums of weights of removed likes by id of post
+     */
+    public void decrementTrendingScores(Map<Long, Double> weights) {
+        Table table = Table.of(LikeTarget.POST);
+        batchUpdate(table.decrementScoreSql(), weights.entrySet(), (ps, weight) -> {
+            ps.setDouble(1, weight.getValue());
+            ps.setLong(2, weight.getKey());
+        });
+    }
+
+    /**
+     * reads and locks dates of likes, which are about to be deleted, in batches
+     * @return dates of existing likes by user and target
+     */
+    private Map<LikeKey, LocalDateTime> findLikeDates(Table table, List<LikeChange> likes) {
+        Map<LikeKey, LocalDateTime> likeDates = new HashMap<>();
+        for(int from = 0; from < likes.size(); from += BATCH_SIZE){
+            List<LikeChange> batch = likes.subList(from, Math.min(from + BATCH_SIZE, likes.size()));
+            Object[] keys = batch.stream().flatMap(like -> Stream.of(like.userId(), like.targetId())).toArray();
+
+            jdbcTemplate.query(table.likeDatesSql(batch.size()), rs -> {
+                likeDates.put(new LikeKey(rs.getString(1), rs.getLong(2)), rs.getTimestamp(3).toLocalDateTime());
+            }, keys);
+        }
+        return likeDates;
+    }
+
+    private record LikeKey(String userId, Long targetId) {
+    }
+
+    /**
+     * executes statement for every item in batches
+     * @return numbers of updated rows, in order of items
+     */
+    private <T> int[] batchUpdate(String sql, Collection<T> items, ParameterizedPreparedStatementSetter<T> setter) {
+        if(items.isEmpty()) return new int[0];
+
+        return Arrays.stream(jdbcTemplate.batchUpdate(sql, items, BATCH_SIZE, setter))
+                .flatMapToInt(Arrays::stream)
+                .toArray();
+    }
+
+    /**
+     * names of like table, liked table, its id column and score column, which changes together with like counter,
+     * and counter of author of liked entity, which changes too
+     */
+    private record Table(String likeTable,
+                         String targetTable,
+                         String idColumn,
+                         @Nullable String scoreColumn,
+                         @Nullable String authorCounterColumn) {
+
+        static Table of(LikeTarget target) {
+            return switch (target) {
+                case POST -> new Table("post_like", "post", "post_id", "trending_score", "likes_received");
+                case COMMENT -> new Table("comment_like", "comment", "comment_id", null, null);
+            };
+        }
+
+        /**
+         * inserts like only if it doesn't exist yet, and both user and liked entity exist
+         */
+        String insertSql() {
+            return "INSERT INTO " + likeTable + " (user_id, " + idColumn + ", like_date) " +
+                    "SELECT ?, t." + idColumn + ", ? FROM " + targetTable + " t " +
+                    "WHERE t." + idColumn + " = ? " +
+                    "AND EXISTS (SELECT 1 FROM \"app-user\" u WHERE u.user_id = ?) " +
+                    "AND NOT EXISTS (SELECT 1 FROM " + likeTable + " l WHERE l.user_id = ? AND l." + idColumn + " = t." + idColumn + ")";
+        }
+
+        String existsSql() {
+            return "SELECT EXISTS (SELECT 1 FROM " + likeTable + " WHERE user_id = ? AND " + idColumn + " = ?)";
+        }
+
+        String likeDateSql() {
+            return "SELECT like_date FROM " + likeTable + " WHERE user_id = ? AND " + idColumn + " = ? FOR UPDATE";
+        }
+
+        String likeDatesSql(int count) {
+            return "SELECT user_id, " + idColumn + ", like_date FROM " + likeTable + " " +
+                    "WHERE (user_id, " + idColumn + ") IN (" + String.join(", ", Collections.nCopies(count, "(?, ?)")) + ") FOR UPDATE";
+        }
+
+        String deleteSql() {
+            return "DELETE FROM " + likeTable + " WHERE user_id = ? AND " + idColumn + " = ?";
+        }
+
+        String incrementSql() {
+            String scoreUpdate = scoreColumn != null ? ", " + scoreColumn + " = GREATEST(" + scoreColumn + " + ?, 0)" : "";
+            return "UPDATE " + targetTable + " SET like_count = like_count + ?" + scoreUpdate + " WHERE " + idColumn + " = ?";
+        }
+
+        String decrementScoreSql() {
+            return "UPDATE " + targetTable + " SET " + scoreColumn + " = GREATEST(" + scoreColumn + " - ?, 0) WHERE " + idColumn + " = ?";
+        }
+
+        String authorIncrementSql() {
+            return "UPDATE \"app-user\" SET " + authorCounterColumn + " = " + authorCounterColumn + " + ? " +
+                    "WHERE user_id = (SELECT t.user_id FROM " + targetTable + " t WHERE t." + idColumn + " = ?)";
+        }
+    }
+}
@@ -1,16 +1,53 @@
 package com.naukma.thesisbackend.repositories;
 
-import com.naukma.thesisbackend.entities.Post;
 import com.naukma.thesisbackend.entities.PostLike;
-import com.naukma.thesisbackend.entities.User;
 import com.naukma.thesisbackend.entities.keys.PostLikeKey;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 @Repository
 public interface PostLikeRepository extends JpaRepository<PostLike, PostLikeKey> {
-    Optional<PostLike> findByUserAndPost(User user, Post post);
+    /**
+     * finds which of specified posts are liked by user, in one query
+     * @param userId id of user
+     * @param postIds ids of posts to check
+     * @return ids of liked posts, subset of postIds
+     */
+    @Query("SELECT pl.id.postId FROM PostLike pl WHERE pl.id.userId = :userId AND pl.id.postId IN :postIds")
+    Set<Long> findLikedPostIds(@Param("userId") String userId, @Param("postIds") Collection<Long> postIds);
 
-}
\ No newline at end of file
+    /**
+     * finds likes of user under posts of other authors
+     * @param userId id of user
+     * @return pairs of post id and date of like
+     */
+    @Query("SELECT pl.id.postId, pl.likeDate FROM PostLike pl WHERE pl.id.userId = :userId AND pl.post.postAuthor.userId <> :userId")
+    List<Object[]> findLikesOfOthersPostsBy(@Param("userId") String userId);
+
+    /**
+     * keyset query for posts liked by user, the most recently liked first.
+     * It reads only index on user and date of like, without touching posts. User is included into ordering,
+     * so that rows are read in order of index without sorting
+     * @param userId id of user
+     * @param cursorDate date of the last like from previous page, null for the first page
+     * @param cursorId id of the last post from previous page
+     * @return pairs of post id and date of like
+     */
+    @Query("SELECT pl.id.postId, pl.likeDate FROM PostLike pl WHERE pl.id.userId = :userId " +
+            "AND (:cursorDate IS NULL OR pl.likeDate < :cursorDate " +
+            "OR (pl.likeDate = :cursorDate AND pl.id.postId < :cursorId)) " +
+            "ORDER BY pl.id.userId, pl.likeDate DESC, pl.id.postId DESC")
+    List<Object[]> findLikedPostIdsBefore(@Param("userId") String userId,
+                                          @Param("cursorDate") LocalDateTime cursorDate,
+                                          @Param("cursorId") Long cursorId,
+                                          Pageable pageable);
+
+}
@@ -1,55 +1,234 @@
 package com.naukma.thesisbackend.repositories;
 
 import com.naukma.thesisbackend.entities.Post;
+import com.naukma.thesisbackend.entities.Tag;
+import com.naukma.thesisbackend.projections.PostSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
     Optional<Post> findPostByPostId(Long postId);
 
+    /**
+     * atomically changes like counter and trending score of post
+     * @param postId id of post
+     * @param delta value to add to counter, 1 for new like and -1 for removed one
+     * @param scoreDelta value to add to trending score, 1 for new like and minus current weight for removed one
+     * @return number of updated posts (0 if there is no such post)
+     */
+    @Modifying
+    @Query(value = "UPDATE post SET like_count = like_count + :delta, " +
+            "trending_score = GREATEST(trending_score + :scoreDelta, 0) " +
+            "WHERE post_id = :postId", nativeQuery = true)
+    int incrementLikeCount(@Param("postId") Long postId, @Param("delta") int delta, @Param("scoreDelta") double scoreDelta);
 
-    @Query("SELECT DISTINCT p FROM Post p " +
-            "LEFT JOIN p.tags t " +
-            "WHERE (:authorId IS NULL OR p.postAuthor.userId LIKE %:authorId%) " +
-            "AND (:tagIds IS NULL OR t.tagId IN :tagIds) " +
-            "AND (:minDate IS NULL OR p.postedDate >= :minDate) " +
-            "AND (:maxDate IS NULL OR p.postedDate <= :maxDate) " +
-            "AND (:title IS NULL OR p.title LIKE %:title%)")
-    Page<Post> findFilteredPosts(@Param("authorId") String authorId,
-                                 @Param("tagIds") List<Long> tagIds,
-                                 @Param("minDate") LocalDateTime minDate,
-                                 @Param("maxDate") LocalDateTime maxDate,
-                                 @Param("title") String title,
-                                 Pageable pageable);
+    /**
+     * subtracts likes of user from like counters of liked posts. Must be called before user is deleted,
+     * since its likes are deleted in cascade. Trending scores are decremented separately, by weights of likes
+     * @param userId id of user
+     * @return number of updated posts
+     */
+    @Modifying
+    @Query(value = "UPDATE post SET like_count = like_count - 1 " +
+            "WHERE post_id IN (SELECT pl.post_id FROM post_like pl WHERE pl.user_id = :userId)", nativeQuery = true)
+    int decrementLikeCountsOfLiker(@Param("userId") String userId);
+
+    /**
+     * multiplies trending scores of all posts by decay factor. Scores, which become negligible, are set to 0,
+     * so posts without recent likes are not updated again
+     * @param factor decay factor, between 0 and 1
+     * @param threshold minimal non-zero score
+     * @return number of updated posts
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE post SET trending_score = CASE WHEN trending_score * :factor < :threshold THEN 0 " +
+            "ELSE trending_score * :factor END " +
+            "WHERE trending_score > 0", nativeQuery = true)
+    int decayTrendingScores(@Param("factor") double factor, @Param("threshold") double threshold);
 
+    /**
+     * recalculates like counters of posts with ids in specified range, if they differ from real number of likes
+     * @return number of repaired posts
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE post p SET like_count = (SELECT COUNT(*) FROM post_like pl WHERE pl.post_id = p.post_id) " +
+            "WHERE p.post_id BETWEEN :fromId AND :toId " +
+            "AND p.like_count <> (SELECT COUNT(*) FROM post_like pl WHERE pl.post_id = p.post_id)",
+            nativeQuery = true)
+    int reconcileLikeCounts(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT MAX(p.postId) FROM Post p")
+    Long findMaxPostId();
 
     /**
-     * the same query as the one above, but for case when posts have to be sorted by likes
+     * streams like counters of all posts, as pairs of post id and like counter
      */
-    @Query("SELECT DISTINCT p, COUNT(pl) FROM Post p " +
-            "LEFT JOIN p.postLikes pl " +
-            "LEFT JOIN p.tags t " +
-            "WHERE (:authorId IS NULL OR p.postAuthor.userId LIKE %:authorId%) " +
-            "AND (:tagIds IS NULL OR t.tagId IN :tagIds) " +
+    @Query("SELECT p.postId, p.likeCount FROM Post p")
+    Stream<Object[]> streamPostLikeCounts();
+
+    /**
+     * finds like counters of posts, as pairs of post id and like counter
+     */
+    @Query("SELECT p.postId, p.likeCount FROM Post p WHERE p.postId IN :postIds")
+    List<Object[]> findLikeCounts(@Param("postIds") Collection<Long> postIds);
+
+
+    String POST_SUMMARY = "SELECT new com.naukma.thesisbackend.projections.PostSummary(" +
+            "p.postId, p.title, p.content, p.postedDate, p.likeCount, a.userId, a.nickname) " +
+            "FROM Post p JOIN p.postAuthor a ";
+
+    /**
+     * filters, shared by all feed queries. Authors and tags are filtered by database only when there are too many
+     * of matching users or posts to pass their ids, then post must have at least :tagMatchCount of given tags.
+     * Title is always checked by database, since candidate posts found by search index may not contain it
+     */
+    String POST_FILTER = "WHERE (:authorIds IS NULL OR a.userId IN :authorIds) " +
+            "AND (:authorId IS NULL OR a.userId LIKE %:authorId%) " +
+            "AND (:title IS NULL OR p.title LIKE %:title%) " +
+            "AND (:tagIds IS NULL OR p.postId IN (SELECT tp.postId FROM Post tp JOIN tp.tags t WHERE t.tagId IN :tagIds " +
+            "GROUP BY tp.postId HAVING COUNT(DISTINCT t.tagId) >= :tagMatchCount)) " +
             "AND (:minDate IS NULL OR p.postedDate >= :minDate) " +
             "AND (:maxDate IS NULL OR p.postedDate <= :maxDate) " +
-            "AND (:title IS NULL OR p.title LIKE %:title%)" +
-            "GROUP BY p.postId " +
-            "ORDER BY COUNT(pl)")
-    Page<Object[]> findFilteredPostsSortByLikes(@Param("authorId") String authorId,
-                                 @Param("tagIds") List<Long> tagIds,
-                                 @Param("minDate") LocalDateTime minDate,
-                                 @Param("maxDate") LocalDateTime maxDate,
-                                 @Param("title") String title,
-                                 Pageable pageable);
+            "AND (:postIds IS NULL OR p.postId IN :postIds) ";
+
+    /**
+     * finds page of filtered posts as flat projections, sorted by {@code pageable}.
+     * Sorting by likes is done by denormalized like counter, without touching likes table
+     */
+    @Query(value = POST_SUMMARY + POST_FILTER,
+            countQuery = "SELECT COUNT(p) FROM Post p JOIN p.postAuthor a " + POST_FILTER)
+    Page<PostSummary> findFilteredPostSummaries(@Param("authorIds") Collection<String> authorIds,
+                                                @Param("authorId") String authorId,
+                                                @Param("title") String title,
+                                                @Param("minDate") LocalDateTime minDate,
+                                                @Param("maxDate") LocalDateTime maxDate,
+                                                @Param("postIds") Collection<Long> postIds,
+                                                @Param("tagIds") Collection<Long> tagIds,
+                                                @Param("tagMatchCount") long tagMatchCount,
+                                                Pageable pageable);
+
+    /**
+     * keyset query for descending feed: returns posts which go strictly after cursor (postedDate, postId).
+     * Does not count total number of elements, so {@code pageable} is used only for limiting
+     */
+    @Query(POST_SUMMARY + POST_FILTER +
+            "AND (:cursorDate IS NULL OR p.postedDate < :cursorDate " +
+            "OR (p.postedDate = :cursorDate AND p.postId < :cursorId)) " +
+            "ORDER BY p.postedDate DESC, p.postId DESC")
+    List<PostSummary> findFilteredPostSummariesBefore(@Param("authorIds") Collection<String> authorIds,
+                                                      @Param("authorId") String authorId,
+                                                      @Param("title") String title,
+                                                      @Param("minDate") LocalDateTime minDate,
+                                                      @Param("maxDate") LocalDateTime maxDate,
+                                                      @Param("postIds") Collection<Long> postIds,
+                                                      @Param("tagIds") Collection<Long> tagIds,
+                                                      @Param("tagMatchCount") long tagMatchCount,
+                                                      @Param("cursorDate") LocalDateTime cursorDate,
+                                                      @Param("cursorId") Long cursorId,
+                                                      Pageable pageable);
+
+    /**
+     * the same query as the one above, but for ascending feed
+     */
+    @Query(POST_SUMMARY + POST_FILTER +
+            "AND (:cursorDate IS NULL OR p.postedDate > :cursorDate " +
+            "OR (p.postedDate = :cursorDate AND p.postId > :cursorId)) " +
+            "ORDER BY p.postedDate ASC, p.postId ASC")
+    List<PostSummary> findFilteredPostSummariesAfter(@Param("authorIds") Collection<String> authorIds,
+                                                     @Param("authorId") String authorId,
+                                                     @Param("title") String title,
+                                                     @Param("minDate") LocalDateTime minDate,
+                                                     @Param("maxDate") LocalDateTime maxDate,
+                                                     @Param("postIds") Collection<Long> postIds,
+                                                     @Param("tagIds") Collection<Long> tagIds,
+                                                     @Param("tagMatchCount") long tagMatchCount,
+                                                     @Param("cursorDate") LocalDateTime cursorDate,
+                                                     @Param("cursorId") Long cursorId,
+                                                     Pageable pageable);
+
+    /**
+     * keyset query for posts of one author, newest first. Served by index on author and date of post,
+     * author is included into ordering, so that rows are read in order of index without sorting
+     */
+    @Query(POST_SUMMARY + "WHERE a.userId = :authorId " +
+            "AND (:cursorDate IS NULL OR p.postedDate < :cursorDate " +
+            "OR (p.postedDate = :cursorDate AND p.postId < :cursorId)) " +
+            "ORDER BY a.userId, p.postedDate DESC, p.postId DESC")
+    List<PostSummary> findAuthorPostSummariesBefore(@Param("authorId") String authorId,
+                                                    @Param("cursorDate") LocalDateTime cursorDate,
+                                                    @Param("cursorId") Long cursorId,
+                                                    Pageable pageable);
+
+    /**
+     * @param authorId id of user
+     * @return ids of all posts of user
+     */
+    @Query("SELECT p.postId FROM Post p WHERE p.postAuthor.userId = :authorId")
+    List<Long> findPostIdsByAuthor(@Param("authorId") String authorId);
+
+    /**
+     * keyset query for ids of posts of one author, newest first. It reads only index on author and date of post
+     * @return pairs of post id and date of post
+     */
+    @Query("SELECT p.postId, p.postedDate FROM Post p WHERE p.postAuthor.userId = :authorId " +
+            "AND (:cursorDate IS NULL OR p.postedDate < :cursorDate " +
+            "OR (p.postedDate = :cursorDate AND p.postId < :cursorId)) " +
+            "ORDER BY p.postAuthor.userId, p.postedDate DESC, p.postId DESC")
+    List<Object[]> findAuthorPostIdsBefore(@Param("authorId") String authorId,
+                                           @Param("cursorDate") LocalDateTime cursorDate,
+                                           @Param("cursorId") Long cursorId,
+                                           Pageable pageable);
+
+    /**
+     * retrieves posts with specified ids as flat projections, in arbitrary order
+     */
+    @Query(POST_SUMMARY + "WHERE p.postId IN :postIds")
+    List<PostSummary> findPostSummariesByIds(@Param("postIds") Collection<Long> postIds);
+
+    /**
+     * retrieves posts ordered by id, starting after specified id. Used for walking through all posts batch by batch
+     */
+    @Query(POST_SUMMARY + "WHERE p.postId > :lastPostId ORDER BY p.postId")
+    List<PostSummary> findPostSummariesAfterId(@Param("lastPostId") Long lastPostId, Pageable pageable);
+
+    /**
+     * streams all posts as flat projections ordered by id. Must be called inside transaction.
+     * Rows are read from database in portions of fetch size, so the whole result is never held in memory
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(POST_SUMMARY + "ORDER BY p.postId")
+    Stream<PostSummary> streamAllPostSummaries();
+
+    /**
+     * streams all pairs of tag id and id of post, tagged by it. Must be called inside transaction
+     */
+    @Query("SELECT t.tagId, p.postId FROM Post p JOIN p.tags t")
+    Stream<Object[]> streamAllPostTags();
+
+    /**
+     * retrieves tags of several posts in one query
+     * @param postIds ids of posts
+     * @return pairs of post id and {@link Tag} of this post
+     */
+    @Query("SELECT p.postId, t FROM Post p JOIN p.tags t WHERE p.postId IN :postIds")
+    List<Object[]> findTagsOfPosts(@Param("postIds") Collection<Long> postIds);
 }
@@ -1,10 +1,20 @@
 package com.naukma.thesisbackend.repositories;
 
 import com.naukma.thesisbackend.entities.User;
+import com.naukma.thesisbackend.enums.UserRole;
+import com.naukma.thesisbackend.projections.TokenState;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
@@ -13,4 +23,135 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     boolean existsByUserId(String userId);
 
+    boolean existsByAvatar(String avatar);
+
+    /**
+     * @param avatars names of avatar images
+     * @return names of images, which are avatars of any user
+     */
+    @Query("SELECT DISTINCT u.avatar FROM User u WHERE u.avatar IN :avatars")
+    Set<String> findReferencedAvatars(@Param("avatars") Collection<String> avatars);
+
+    /**
+     * reads avatar of user without loading the user
+     * @return name of avatar image, empty string if user has no avatar, or empty optional if there is no such user
+     */
+    @Query("SELECT COALESCE(u.avatar, '') FROM User u WHERE u.userId = :userId")
+    Optional<String> findAvatarByUserId(@Param("userId") String userId);
+
+    /**
+     * reads version of access tokens and role of user without loading the user
+     * @return current token version and role, or empty optional if there is no such user
+     */
+    @Query("SELECT new com.naukma.thesisbackend.projections.TokenState(u.tokenVersion, u.role) FROM User u WHERE u.userId = :userId")
+    Optional<TokenState> findTokenState(@Param("userId") String userId);
+
+    /**
+     * atomically increments version of access tokens of user, so all its issued tokens become invalid
+     * @param userId id of user
+     * @return number of updated users
+     */
+    @Modifying
+    @Query(value = "UPDATE \"app-user\" SET token_version = token_version + 1 WHERE user_id = :userId", nativeQuery = true)
+    int incrementTokenVersion(@Param("userId") String userId);
+
+    /**
+     * changes role of user without loading the user
+     * @param userId id of user
+     * @param role new role
+     * @return number of updated users
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.role = :role WHERE u.userId = :userId")
+    int updateRole(@Param("userId") String userId, @Param("role") UserRole role);
+
+    /**
+     * retrieves ids and nicknames of all users without loading user entities
+     * @return pairs of user id and nickname
+     */
+    @Query("SELECT u.userId, u.nickname FROM User u")
+    List<Object[]> findAllUserIdsAndNicknames();
+
+    /**
+     * checks existence of several users in one query
+     * @param userIds ids of users
+     * @return ids of users, which exist
+     */
+    @Query("SELECT u.userId FROM User u WHERE u.userId IN :userIds")
+    List<String> findExistingUserIds(@Param("userIds") Collection<String> userIds);
+
+    /**
+     * atomically changes post counter of user
+     * @param userId id of user
+     * @param delta value to add to counter
+     */
+    @Modifying
+    @Query(value = "UPDATE \"app-user\" SET post_count = post_count + :delta WHERE user_id = :userId", nativeQuery = true)
+    int incrementPostCount(@Param("userId") String userId, @Param("delta") int delta);
+
+    /**
+     * atomically changes comment counter of user
+     * @param userId id of user
+     * @param delta value to add to counter
+     */
+    @Modifying
+    @Query(value = "UPDATE \"app-user\" SET comment_count = comment_count + :delta WHERE user_id = :userId", nativeQuery = true)
+    int incrementCommentCount(@Param("userId") String userId, @Param("delta") int delta);
+
+    /**
+     * atomically changes counter of received likes of post author
+     * @param postId id of liked post
+     * @param delta value to add to counter, 1 for new like and -1 for removed one
+     */
+    @Modifying
+    @Query(value = "UPDATE \"app-user\" SET likes_received = likes_received + :delta " +
+            "WHERE user_id = (SELECT p.user_id FROM post p WHERE p.post_id = :postId)", nativeQuery = true)
+    int incrementLikesReceivedOfPostAuthor(@Param("postId") Long postId, @Param("delta") int delta);
+
+    /**
+     * subtracts likes of user from received like counters of authors of liked posts. Must be called before user is deleted
+     * @param userId id of user
+     */
+    @Modifying
+    @Query(value = "UPDATE \"app-user\" u SET likes_received = likes_received - " +
+            "(SELECT COUNT(*) FROM post_like pl JOIN post p ON p.post_id = pl.post_id " +
+            "WHERE pl.user_id = :userId AND p.user_id = u.user_id) " +
+            "WHERE u.user_id IN (SELECT p.user_id FROM post_like pl JOIN post p ON p.post_id = pl.post_id " +
+            "WHERE pl.user_id = :userId)", nativeQuery = true)
+    int decrementLikesReceivedOfLiker(@Param("userId") String userId);
+
+    /**
+     * subtracts comments of post from comment counters of their authors. Must be called before post is deleted
+     * @param postId id of post
+     */
+    @Modifying
+    @Query(value = "UPDATE \"app-user\" u SET comment_count = comment_count - " +
+            "(SELECT COUNT(*) FROM comment c WHERE c.post_id = :postId AND c.user_id = u.user_id) " +
+            "WHERE u.user_id IN (SELECT c.user_id FROM comment c WHERE c.post_id = :postId)", nativeQuery = true)
+    int decrementCommentCountsOfPost(@Param("postId") Long postId);
+
+    /**
+     * retrieves user ids in alphabetical order, starting after specified id. Used for walking through all users batch by batch
+     */
+    @Query("SELECT u.userId FROM User u WHERE u.userId > :lastUserId ORDER BY u.userId")
+    List<String> findUserIdsAfter(@Param("lastUserId") String lastUserId, Pageable pageable);
+
+    /**
+     * recalculates counters of specified users, if they differ from real numbers of posts, comments and likes
+     * @param userIds ids of users
+     * @return number of repaired users
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE \"app-user\" u SET " +
+            "post_count = (SELECT COUNT(*) FROM post p WHERE p.user_id = u.user_id), " +
+            "comment_count = (SELECT COUNT(*) FROM comment c WHERE c.user_id = u.user_id), " +
+            "likes_received = (SELECT COALESCE(SUM(p.like_count), 0) FROM post p WHERE p.user_id = u.user_id) " +
+            "WHERE u.user_id IN :userIds AND (" +
+            "u.post_count <> (SELECT COUNT(*) FROM post p WHERE p.user_id = u.user_id) " +
+            "OR u.comment_count <> (SELECT COUNT(*) FROM comment c WHERE c.user_id = u.user_id) " +
+            "OR u.likes_received <> (SELECT COALESCE(SUM(p.like_count), 0) FROM post p WHERE p.user_id = u.user_id))",
+            nativeQuery = true)
+    int reconcileCounters(@Param("userIds") Collection<String> userIds);
+
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package com.naukma.thesisbackend.search;
+
+import com.naukma.thesisbackend.repositories.PostRepository;
+import com.naukma.thesisbackend.transaction.TransactionHooks;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * in-memory ranking of all posts by number of likes, kept in skip list.
+ * Posts are ordered as in database query sorted by like counter and id, from the most liked ones,
+ * so top pages of unfiltered posts can be read from memory
+ */
+@Component
+public class LikeRankingIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeRankingIndex.class);
+
+    /**
+     * maximal number of skipped posts, for which ranking is used. Skipping is linear, so deep pages are left to database
+     */
+    public static final int MAX_RANKED_OFFSET = 1000;
+
+    /**
+     * maximal number of posts, which like counters are read again with one query after rebuild
+     */
+    private static final int REFRESH_BATCH_SIZE = 1000;
+
+    private static final Comparator<RankedPost> MOST_LIKED_FIRST = Comparator
+            .comparingInt(RankedPost::likeCount)
+            .thenComparingLong(RankedPost::postId)
+            .reversed();
+
+    private record RankedPost(int likeCount, long postId) {
+    }
+
+    /**
+     * ordered posts together with like counters by post id, which are needed to find posts in ranking
+     */
+    private record Ranking(NavigableSet<RankedPost> posts, Map<Long, Integer> likeCounts) {
+        Ranking() {
+            this(new ConcurrentSkipListSet<>(MOST_LIKED_FIRST), new ConcurrentHashMap<>());
+        }
+    }
+
+    private final PostRepository postRepository;
+
+    private volatile Ranking ranking = new Ranking();
+
+    /**
+     * ids of posts changed while ranking is rebuilt. Such changes may be counted by rebuilt ranking or not,
+     * so like counters of these posts are read again before rebuilt ranking replaces the current one.
+     * Null if ranking is not rebuilt
+     */
+    private volatile @Nullable Set<Long> changedPostIds;
+
+    /**
+     * shared lock is held by transactions, which change ranking, from before their commit until their change is applied.
+     * Rebuild takes exclusive lock to start recording of changed posts and to swap rankings, not while posts are read,
+     * so when it holds the lock, every committed change is already applied and recorded
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public LikeRankingIndex(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    /**
+     * builds ranking from like counters in database. Current ranking is used and changed while posts are read,
+     * and is replaced by the rebuilt one, with counters of posts changed in meantime read again
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        lock.writeLock().lock();
+        try {
+            changedPostIds = changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Ranking rebuilt = new Ranking();
+        boolean built = false;
+        try (Stream<Object[]> posts = postRepository.streamPostLikeCounts()) {
+            posts.forEach(post -> set(rebuilt, (Long) post[0], (Integer) post[1]));
+            //most of changed posts are read again without blocking changes, the rest is read while rankings are swapped
+            refresh(rebuilt, drain(changed));
+            built = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if(built){
+                    refresh(rebuilt, drain(changed));
+                    ranking = rebuilt;
+                }
+                changedPostIds = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Like ranking built for {} posts", rebuilt.likeCounts().size());
+    }
+
+    /**
+     * adds new post into ranking. Inside of transaction it is done after commit
+     * @param postId id of post
+     */
+    public void add(Long postId) {
+        change(postId, current -> current.likeCounts().computeIfAbsent(postId, id -> {
+            current.posts().add(new RankedPost(0, id));
+            return 0;
+        }));
+    }
+
+    /**
+     * changes number of likes of post. Inside of transaction it is done after commit.
+     * Posts which are not ranked are ignored, so removed post can't be added again by late change of its likes
+     * @param postId id of post
+     * @param delta change of like counter
+     */
+    public void increment(Long postId, int delta) {
+        //posts are moved inside of compute, so concurrent changes of the same post can't lose its entry
+        change(postId, current -> current.likeCounts().computeIfPresent(postId, (id, likeCount) -> {
+            current.posts().remove(new RankedPost(likeCount, id));
+            int updated = Math.max(likeCount + delta, 0);
+            current.posts().add(new RankedPost(updated, id));
+            return updated;
+        }));
+    }
+
+    /**
+     * removes post from ranking. Inside of transaction it is done after commit
+     * @param postId id of post
+     */
+    public void remove(Long postId) {
+        change(postId, current -> current.likeCounts().computeIfPresent(postId, (id, likeCount) -> {
+            current.posts().remove(new RankedPost(likeCount, id));
+            return null;
+        }));
+    }
+
+    /**
+     * reads ids of posts from ranking
+     * @param ascending true to start from the least liked posts
+     * @param offset number of skipped posts, at most {@link #MAX_RANKED_OFFSET}
+     * @param limit maximal number of returned posts
+     * @return ids of posts in order of ranking
+     */
+    public List<Long> findPostIds(boolean ascending, int offset, int limit) {
+        NavigableSet<RankedPost> posts = ranking.posts();
+
+        return (ascending ? posts.descendingSet() : posts)
+                .stream()
+                .skip(offset)
+                .limit(limit)
+                .map(RankedPost::postId)
+                .toList();
+    }
+
+    /**
+     * @return number of ranked posts
+     */
+    public int size() {
+        return ranking.likeCounts().size();
+    }
+
+    /**
+     * @param postId id of post
+     * @return number of likes of post in ranking, or null if post is not ranked
+     */
+    @Nullable Integer likeCountOf(Long postId) {
+        return ranking.likeCounts().get(postId);
+    }
+
+    /**
+     * applies change to current ranking after commit, and records post if ranking is being rebuilt
+     */
+    private void change(Long postId, Consumer<Ranking> change) {
+        TransactionHooks.afterCommit(lock.readLock(), () -> {
+            change.accept(ranking);
+            Set<Long> changed = changedPostIds;
+            if(changed != null) changed.add(postId);
+        });
+    }
+
+    /**
+     * reads like counters of posts from database into ranking, which is not used yet. Deleted posts are removed from it
+     */
+    private void refresh(Ranking rebuilt, List<Long> postIds) {
+        for(int from = 0; from < postIds.size(); from += REFRESH_BATCH_SIZE){
+            List<Long> batch = postIds.subList(from, Math.min(from + REFRESH_BATCH_SIZE, postIds.size()));
+            Map<Long, Integer> likeCounts = new HashMap<>();
+            postRepository.findLikeCounts(batch).forEach(post -> likeCounts.put((Long) post[0], (Integer) post[1]));
+            for(Long postId : batch){
+                set(rebuilt, postId, likeCounts.get(postId));
+            }
+        }
+    }
+
+    /**
+     * sets number of likes of post in ranking, which is not used yet
+     * @param likeCount number of likes, or null to remove post
+     */
+    private static void set(Ranking ranking, Long postId, @Nullable Integer likeCount) {
+        Integer previous = likeCount != null ? ranking.likeCounts().put(postId, likeCount) : ranking.likeCounts().remove(postId);
+        if(previous != null) ranking.posts().remove(new RankedPost(previous, postId));
+        if(likeCount != null) ranking.posts().add(new RankedPost(likeCount, postId));
+    }
+
+    private static List<Long> drain(Set<Long> postIds) {
+        List<Long> drained = new ArrayList<>(postIds);
+        postIds.removeAll(drained);
+        return drained;
+    }
+}
@@ -0,0 +1,418 @@
+package com.naukma.thesisbackend.search;
+
+import com.naukma.thesisbackend.exceptions.InvalidSearchException;
+import com.naukma.thesisbackend.projections.PostSummary;
+import com.naukma.thesisbackend.repositories.PostRepository;
+import com.naukma.thesisbackend.transaction.TransactionHooks;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.jetbrains.annotations.Nullable;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * full-text index of post titles and contents, stored on local disk.
+ * It is updated together with posts, and can be rebuilt from database at any time
+ */
+@Component
+public class PostSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchIndex.class);
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String CONTENT = "content";
+
+    /**
+     * lower case three-letter fragments of title, used to find candidates of title substring filter
+     */
+    private static final String TITLE_TRIGRAM = "titleTrigram";
+
+    /**
+     * version of document fields, stored in commit data of index. Index of other version is rebuilt on startup
+     */
+    private static final String FORMAT_KEY = "format";
+    private static final String FORMAT = "2";
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final PostRepository postRepository;
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    @Value("${custom.search-index.directory}")
+    private String indexDirectory;
+
+    /**
+     * maximal number of candidate posts of title filter. All candidate ids are passed into feed query,
+     * so filter matching more posts is applied by database alone
+     */
+    @Value("${custom.search-index.max-matches}")
+    private int maxMatches;
+
+    /**
+     * maximal number of results, which can be read by ranked search. Deeper pages are rejected,
+     * since all results before requested page have to be collected
+     */
+    @Value("${custom.search-index.max-result-window}")
+    private int maxResultWindow;
+
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+
+    /**
+     * serializes changes of posts with batches of rebuild, so rebuild never writes older version of post,
+     * than the one written by change
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * ids of posts, written into index since rebuild started, or null if there is no rebuild.
+     * Documents of other posts are deleted at the end of rebuild. Guarded by write lock
+     */
+    private @Nullable Roaring64NavigableMap rebuiltPostIds;
+
+    public PostSearchIndex(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+
+        indexWriter = new IndexWriter(FSDirectory.open(Path.of(indexDirectory)), config);
+        searcherManager = new SearcherManager(indexWriter, null);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+    }
+
+    /**
+     * rebuilds index from database, if number of indexed posts differs from number of posts, or documents have old fields.
+     * Index is empty on the first start, and changes made after the last commit of index are lost on crash
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfOutOfSync() {
+        String format = null;
+        Iterable<Map.Entry<String, String>> commitData = indexWriter.getLiveCommitData();
+        if(commitData != null){
+            for(Map.Entry<String, String> entry : commitData){
+                if(entry.getKey().equals(FORMAT_KEY)) format = entry.getValue();
+            }
+        }
+        long indexed = indexWriter.getDocStats().numDocs;
+        long posts = postRepository.count();
+        if(indexed != posts || !FORMAT.equals(format)){
+            log.info("Search index of format {} has {} of {} posts, rebuilding it from database", format, indexed, posts);
+            rebuild();
+        }
+    }
+
+    /**
+     * makes all changes durable. Changes are visible to searches right after they are made,
+     * so commit is done in background, instead of on every change
+     */
+    @Scheduled(fixedDelayString = "${custom.search-index.commit-interval}")
+    public void commit() {
+        if(!indexWriter.hasUncommittedChanges()) return;
+
+        try {
+            indexWriter.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * adds post into index or replaces previous version of it. Inside of transaction it is done after commit
+     * @param postId id of post
+     * @param title title of post
+     * @param content content of post
+     */
+    public void index(Long postId, String title, String content) {
+        TransactionHooks.afterCommit(() -> indexNow(postId, title, content));
+    }
+
+    private void indexNow(Long postId, String title, String content) {
+        try {
+            writeLock.lock();
+            try {
+                write(postId, title, content);
+            } finally {
+                writeLock.unlock();
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * adds several posts into index or replaces their previous versions. Searcher is refreshed once for all of them,
+     * so it is much faster than indexing posts one by one. Inside of transaction it is done after commit
+     * @param posts posts to index
+     */
+    public void indexAll(Collection<IndexedPost> posts) {
+        TransactionHooks.afterCommit(() -> indexAllNow(posts));
+    }
+
+    private void indexAllNow(Collection<IndexedPost> posts) {
+        try {
+            writeLock.lock();
+            try {
+                for(IndexedPost post : posts){
+                    write(post.postId(), post.title(), post.content());
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * removes post from index. Inside of transaction it is done after commit
+     * @param postId id of post
+     */
+    public void delete(Long postId) {
+        TransactionHooks.afterCommit(() -> deleteNow(postId));
+    }
+
+    private void deleteNow(Long postId) {
+        try {
+            writeLock.lock();
+            try {
+                indexWriter.deleteDocuments(new Term(ID, postId.toString()));
+                if(rebuiltPostIds != null) rebuiltPostIds.removeLong(postId);
+            } finally {
+                writeLock.unlock();
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * ranked search of posts by title and content. Title matches are ranked higher than content matches
+     * @param text search query, all its words must be present in post
+     * @param limit maximal number of results
+     * @return matched posts from the most relevant one, together with total number of matches
+     * @throws InvalidSearchException if limit is greater than maximal result window
+     */
+    public SearchResult search(String text, long limit) {
+        if(limit > maxResultWindow){
+            throw new InvalidSearchException("Only the first " + maxResultWindow + " search results can be requested");
+        }
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(
+                new String[]{TITLE, CONTENT},
+                analyzer,
+                Map.of(TITLE, 2f, CONTENT, 1f));
+
+        return search(parser, text, (int) limit);
+    }
+
+    /**
+     * finds candidate posts of title substring filter. Title of every post, which contains substring ignoring case,
+     * has all its trigrams, but not every candidate contains substring, so it has to be checked by caller
+     * @param substring part of title
+     * @return ids of candidate posts, or null if substring is too short to have trigrams or too many posts have them
+     */
+    public @Nullable Set<Long> findTitleCandidates(String substring) {
+        Set<String> trigrams = TrigramIndex.trigrams(TrigramIndex.normalize(substring));
+        if(trigrams.isEmpty()) return null;
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for(String trigram : trigrams){
+            query.add(new TermQuery(new Term(TITLE_TRIGRAM, trigram)), BooleanClause.Occur.FILTER);
+        }
+        //one more post is requested to find out if there are too many matches
+        List<Long> postIds = search(query.build(), maxMatches + 1).postIds();
+        return postIds.size() <= maxMatches ? new HashSet<>(postIds) : null;
+    }
+
+    /**
+     * writes all posts from database into index and deletes documents of posts, which no longer exist.
+     * Index stays searchable during rebuild, and posts changed concurrently keep their latest version
+     * @return number of indexed posts
+     */
+    public synchronized long rebuild() {
+        try {
+            writeLock.lock();
+            try {
+                rebuiltPostIds = new Roaring64NavigableMap();
+            } finally {
+                writeLock.unlock();
+            }
+
+            long indexed = 0;
+            Long lastPostId = 0L;
+            while(true){
+                //batch is read and written under lock, so post changed after it was read is written after it
+                writeLock.lock();
+                try {
+                    List<PostSummary> batch = postRepository.findPostSummariesAfterId(lastPostId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                    if(batch.isEmpty()) break;
+
+                    for(PostSummary post : batch){
+                        write(post.postId(), post.title(), post.content());
+                    }
+                    indexed += batch.size();
+                    lastPostId = batch.get(batch.size() - 1).postId();
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+
+            writeLock.lock();
+            try {
+                deleteNotRebuilt();
+            } finally {
+                rebuiltPostIds = null;
+                writeLock.unlock();
+            }
+
+            indexWriter.setLiveCommitData(Map.of(FORMAT_KEY, FORMAT).entrySet());
+            indexWriter.commit();
+            searcherManager.maybeRefresh();
+            log.info("Search index rebuilt, {} posts indexed", indexed);
+            return indexed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * deletes documents of posts, which were neither written by rebuild nor changed during it. Called under write lock
+     */
+    private void deleteNotRebuilt() throws IOException {
+        try (DirectoryReader reader = DirectoryReader.open(indexWriter)) {
+            for(LeafReaderContext leaf : reader.leaves()){
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                StoredFields storedFields = leaf.reader().storedFields();
+                for(int doc = 0; doc < leaf.reader().maxDoc(); doc++){
+                    if(liveDocs != null && !liveDocs.get(doc)) continue;
+
+                    String postId = storedFields.document(doc).get(ID);
+                    if(!rebuiltPostIds.contains(Long.parseLong(postId))){
+                        indexWriter.deleteDocuments(new Term(ID, postId));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * writes post into index, replacing its previous version. Called under write lock
+     */
+    private void write(Long postId, String title, String content) throws IOException {
+        indexWriter.updateDocument(new Term(ID, postId.toString()), toDocument(postId, title, content));
+        if(rebuiltPostIds != null) rebuiltPostIds.addLong(postId);
+    }
+
+    private SearchResult search(QueryParser parser, String text, int limit) {
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+
+        Query query;
+        try {
+            query = parser.parse(QueryParser.escape(text));
+        } catch (ParseException e) {
+            return new SearchResult(List.of(), 0);
+        }
+        return search(query, limit);
+    }
+
+    private SearchResult search(Query query, int limit) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(query, Math.max(limit, 1));
+                StoredFields storedFields = searcher.storedFields();
+
+                List<Long> postIds = new ArrayList<>(topDocs.scoreDocs.length);
+                for(ScoreDoc scoreDoc : topDocs.scoreDocs){
+                    postIds.add(Long.parseLong(storedFields.document(scoreDoc.doc).get(ID)));
+                }
+                return new SearchResult(postIds, topDocs.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private Document toDocument(Long postId, String title, String content) {
+        Document document = new Document();
+        document.add(new StringField(ID, postId.toString(), Field.Store.YES));
+        document.add(new TextField(TITLE, title, Field.Store.NO));
+        document.add(new TextField(CONTENT, content, Field.Store.NO));
+        for(String trigram : TrigramIndex.trigrams(TrigramIndex.normalize(title))){
+            document.add(new StringField(TITLE_TRIGRAM, trigram, Field.Store.NO));
+        }
+        return document;
+    }
+
+    /**
+     * indexed fields of post
+     */
+    public record IndexedPost(Long postId, String title, String content) {
+    }
+
+    /**
+     * result of search
+     * @param postIds ids of matched posts, from the most relevant one
+     * @param totalMatches total number of matched posts, can be greater than number of returned ids
+     */
+    public record SearchResult(List<Long> postIds, long totalMatches) {
+    }
+}
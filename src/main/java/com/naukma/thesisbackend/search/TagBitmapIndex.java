@@ -0,0 +1,135 @@
+package com.naukma.thesisbackend.search;
+
+import com.naukma.thesisbackend.repositories.PostRepository;
+import com.naukma.thesisbackend.transaction.TransactionHooks;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * in-memory index of tagged posts. For every tag it keeps compressed bitmap of ids of posts, tagged by it,
+ * so filters by several tags are resolved with bitmap operations instead of joins
+ */
+@Component
+public class TagBitmapIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TagBitmapIndex.class);
+
+    private final PostRepository postRepository;
+
+    private final Map<Long, Roaring64NavigableMap> postIdsByTagId = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TagBitmapIndex(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    /**
+     * builds index from database
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Map<Long, Roaring64NavigableMap> bitmaps = new HashMap<>();
+        try (Stream<Object[]> postTags = postRepository.streamAllPostTags()) {
+            postTags.forEach(postTag -> bitmaps
+                    .computeIfAbsent((Long) postTag[0], tagId -> new Roaring64NavigableMap())
+                    .addLong((Long) postTag[1]));
+        }
+        bitmaps.values().forEach(Roaring64NavigableMap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            postIdsByTagId.clear();
+            postIdsByTagId.putAll(bitmaps);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Tag index built for {} tags", bitmaps.size());
+    }
+
+    /**
+     * sets tags of post, replacing previous ones. Inside of transaction it is done after commit
+     * @param postId id of post
+     * @param tagIds ids of all tags of post
+     */
+    public void setTags(Long postId, Collection<Long> tagIds) {
+        TransactionHooks.afterCommit(() -> setTagsNow(postId, tagIds));
+    }
+
+    private void setTagsNow(Long postId, Collection<Long> tagIds) {
+        lock.writeLock().lock();
+        try {
+            postIdsByTagId.values().forEach(postIds -> postIds.removeLong(postId));
+            for(Long tagId : tagIds){
+                postIdsByTagId.computeIfAbsent(tagId, id -> new Roaring64NavigableMap()).addLong(postId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * removes post from index. Inside of transaction it is done after commit
+     * @param postId id of post
+     */
+    public void removePost(Long postId) {
+        setTags(postId, Set.of());
+    }
+
+    /**
+     * removes tag from index. Inside of transaction it is done after commit
+     * @param tagId id of tag
+     */
+    public void removeTag(Long tagId) {
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                postIdsByTagId.remove(tagId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * finds posts tagged by specified tags
+     * @param tagIds ids of tags
+     * @param matchAll true if post must have all the tags, false if any of them is enough
+     * @return bitmap of ids of matched posts, owned by caller
+     */
+    public Roaring64NavigableMap findPostIds(Collection<Long> tagIds, boolean matchAll) {
+        Roaring64NavigableMap result = null;
+
+        lock.readLock().lock();
+        try {
+            for(Long tagId : new HashSet<>(tagIds)){
+                Roaring64NavigableMap postIds = postIdsByTagId.getOrDefault(tagId, new Roaring64NavigableMap());
+
+                if(result == null){
+                    result = new Roaring64NavigableMap();
+                    result.or(postIds);
+                }
+                else if(matchAll) result.and(postIds);
+                else result.or(postIds);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return result != null ? result : new Roaring64NavigableMap();
+    }
+}
@@ -0,0 +1,112 @@
+package com.naukma.thesisbackend.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * in-memory index for case-insensitive substring search over short texts.
+ * Every text is split into all its three-letter fragments (trigrams), and every trigram points to ids of texts containing it.
+ * Substring of at least three letters can only be found in texts containing all its trigrams,
+ * so only those candidates have to be checked
+ */
+public class TrigramIndex {
+
+    private static final int GRAM = 3;
+
+    private final Map<String, Set<String>> idsByTrigram = new ConcurrentHashMap<>();
+    private final Map<String, String> textById = new ConcurrentHashMap<>();
+
+    /**
+     * adds text into index, or replaces previous text with the same id
+     * @param id id of text
+     * @param text indexed text
+     */
+    public void put(String id, String text) {
+        remove(id);
+
+        String normalized = normalize(text);
+        textById.put(id, normalized);
+        for(String trigram : trigrams(normalized)){
+            idsByTrigram.compute(trigram, (key, ids) -> {
+                Set<String> result = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                result.add(id);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * removes text from index
+     * @param id id of text
+     */
+    public void remove(String id) {
+        String previous = textById.remove(id);
+        if(previous == null) return;
+
+        for(String trigram : trigrams(previous)){
+            idsByTrigram.computeIfPresent(trigram, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * finds all texts containing substring, ignoring case
+     * @param substring searched substring
+     * @return ids of matched texts
+     */
+    public Set<String> search(String substring) {
+        String normalized = normalize(substring);
+        Set<String> result = new HashSet<>();
+
+        //too short substrings have no trigrams, so all texts are checked
+        if(normalized.length() < GRAM){
+            textById.forEach((id, text) -> {
+                if(text.contains(normalized)) result.add(id);
+            });
+            return result;
+        }
+
+        List<Set<String>> postingLists = new ArrayList<>();
+        for(String trigram : trigrams(normalized)){
+            Set<String> ids = idsByTrigram.get(trigram);
+            if(ids == null) return result;
+            postingLists.add(ids);
+        }
+        postingLists.sort(Comparator.comparingInt(Set::size));
+
+        for(String id : postingLists.get(0)){
+            String text = textById.get(id);
+            if(text != null && text.contains(normalized)) result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * returns indexed text
+     * @param id id of text
+     * @return text in lower case, null if there is no such text
+     */
+    public String get(String id) {
+        return textById.get(id);
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        for(int i = 0; i + GRAM <= text.length(); i++){
+            trigrams.add(text.substring(i, i + GRAM));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,119 @@
+package com.naukma.thesisbackend.search;
+
+import com.naukma.thesisbackend.dtos.UserAutocompleteDto;
+import com.naukma.thesisbackend.repositories.UserRepository;
+import com.naukma.thesisbackend.transaction.TransactionHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * in-memory substring index of user ids and nicknames.
+ * It is built from database on start and updated on sign up and deletion of users, after their transactions are committed
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private final UserRepository userRepository;
+
+    private final TrigramIndex userIds = new TrigramIndex();
+    private final TrigramIndex nicknames = new TrigramIndex();
+    private final Map<String, String> nicknameByUserId = new ConcurrentHashMap<>();
+
+    public UserSearchIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        for(Object[] user : userRepository.findAllUserIdsAndNicknames()){
+            addNow((String) user[0], (String) user[1]);
+        }
+        log.info("User search index built, {} users indexed", nicknameByUserId.size());
+    }
+
+    /**
+     * adds user into index. Inside of transaction it is done after commit
+     * @param userId id of user
+     * @param nickname nickname of user
+     */
+    public void add(String userId, String nickname) {
+        TransactionHooks.afterCommit(() -> addNow(userId, nickname));
+    }
+
+    private void addNow(String userId, String nickname) {
+        userIds.put(userId, userId);
+        nicknames.put(userId, nickname);
+        nicknameByUserId.put(userId, nickname);
+    }
+
+    /**
+     * removes user from index. Inside of transaction it is done after commit
+     * @param userId id of user
+     */
+    public void remove(String userId) {
+        TransactionHooks.afterCommit(() -> removeNow(userId));
+    }
+
+    private void removeNow(String userId) {
+        userIds.remove(userId);
+        nicknames.remove(userId);
+        nicknameByUserId.remove(userId);
+    }
+
+    /**
+     * finds users, id of which contains substring. Case is taken into account, as in SQL LIKE
+     * @param substring part of user id
+     * @return ids of matched users
+     */
+    public Set<String> findUserIdsContaining(String substring) {
+        return userIds.search(substring)
+                .stream()
+                .filter(userId -> userId.contains(substring))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * finds users by part of their id or nickname, ignoring case.
+     * Users whose id or nickname starts with query go first
+     * @param query part of user id or nickname
+     * @param limit maximal number of users
+     * @return matched users
+     */
+    public List<UserAutocompleteDto> autocomplete(String query, int limit) {
+        String normalized = query.toLowerCase(Locale.ROOT);
+
+        Set<String> matched = new HashSet<>(userIds.search(query));
+        matched.addAll(nicknames.search(query));
+
+        return matched
+                .stream()
+                .filter(nicknameByUserId::containsKey)
+                .sorted(Comparator
+                        .comparing((String userId) -> !startsWith(userIds.get(userId), normalized)
+                                && !startsWith(nicknames.get(userId), normalized))
+                        .thenComparing(String::length)
+                        .thenComparing(Comparator.naturalOrder()))
+                .limit(limit)
+                .map(userId -> new UserAutocompleteDto(userId, nicknameByUserId.get(userId)))
+                .filter(user -> user.nickname() != null)
+                .toList();
+    }
+
+    private static boolean startsWith(String text, String prefix) {
+        return text != null && text.startsWith(prefix);
+    }
+}
@@ -3,8 +3,10 @@ import com.naukma.thesisbackend.auth.CustomUserDetails;
 import com.naukma.thesisbackend.dtos.SignUpDto;
 import com.naukma.thesisbackend.entities.User;
 import com.naukma.thesisbackend.enums.UserRole;
+import com.naukma.thesisbackend.exceptions.AuthenticationFailedException;
 import com.naukma.thesisbackend.exceptions.InvalidJwtException;
 import com.naukma.thesisbackend.repositories.UserRepository;
+import com.naukma.thesisbackend.search.UserSearchIndex;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -17,9 +19,11 @@ public class AuthService implements UserDetailsService {
 
 
   private final UserRepository userRepository;
+  private final UserSearchIndex userSearchIndex;
 
-  public AuthService(UserRepository userRepository) {
+  public AuthService(UserRepository userRepository, UserSearchIndex userSearchIndex) {
     this.userRepository = userRepository;
+    this.userSearchIndex = userSearchIndex;
   }
 
   @Override
@@ -42,8 +46,10 @@ public class AuthService implements UserDetailsService {
 
     User user = new User(signUpDto.userId(), signUpDto.nickname(), signUpDto.email(), encryptedPassword, UserRole.USER);
 
-    return userRepository.save(user);
+    User savedUser = userRepository.save(user);
+    userSearchIndex.add(savedUser.getUserId(), savedUser.getNickname());
 
+    return savedUser;
   }
 
   /**
@@ -56,6 +62,32 @@ public class AuthService implements UserDetailsService {
             :null;
   }
 
+  /**
+   * method for getting reference to current user without loading it. Reference is resolved lazily,
+   * in persistence context of request, so setting it as author of post or comment doesn't require select of user
+   * @return reference to authenticated user
+   * @throws AuthenticationFailedException if user is not authenticated
+   */
+  public User getCurrentUserReference(){
+    return userRepository.getReferenceById(getCurrentPrincipal().getUsername());
+  }
+
+  /**
+   * method for getting nickname of current user from claims of its token
+   * @return nickname of authenticated user
+   * @throws AuthenticationFailedException if user is not authenticated
+   */
+  public String getCurrentUserNickname(){
+    return getCurrentPrincipal().getNickname();
+  }
+
+  private CustomUserDetails getCurrentPrincipal(){
+    var authentication = SecurityContextHolder.getContext().getAuthentication();
+    if(authentication == null || !(authentication.getPrincipal() instanceof CustomUserDetails userDetails))
+      throw new AuthenticationFailedException("User is not authenticated");
+    return userDetails;
+  }
+
   public boolean userExists(String userId){
     return userRepository.existsByUserId(userId);
   }
@@ -0,0 +1,127 @@
+package com.naukma.thesisbackend.services;
+
+import com.naukma.thesisbackend.exceptions.InvalidImageException;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * image formats, which can be stored and served as avatars. Format of uploaded image is detected from its content,
+ * not from name or content type given by client, so file of other type is never served with image url
+ */
+final class AvatarFormats {
+
+    /**
+     * extensions of stored images by names of formats of image readers
+     */
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "png", "png",
+            "jpeg", "jpg",
+            "gif", "gif");
+
+    /**
+     * content types of served images by their extensions. Also includes extension of images stored before formats were detected
+     */
+    private static final Map<String, MediaType> MEDIA_TYPES = Map.of(
+            "png", MediaType.IMAGE_PNG,
+            "jpg", MediaType.IMAGE_JPEG,
+            "jpeg", MediaType.IMAGE_JPEG,
+            "gif", MediaType.IMAGE_GIF);
+
+    /**
+     * format and dimensions of image, read from its header without decoding it
+     * @param extension extension of image
+     * @param width width in pixels
+     * @param height height in pixels
+     */
+    record ImageInfo(String extension, int width, int height) {
+        long pixels() {
+            return (long) width * height;
+        }
+    }
+
+    private AvatarFormats() {
+    }
+
+    /**
+     * detects format and dimensions of image file by its content. Only header of image is read,
+     * so dimensions can be checked before image is decoded
+     * @param file image file
+     * @return format and dimensions of image, or null if file is not an image of allowed format
+     * @throws IOException in case of problem with reading file
+     */
+    static @Nullable ImageInfo inspect(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if(in == null) return null;
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                String extension = EXTENSIONS.get(reader.getFormatName().toLowerCase(Locale.ROOT));
+                if(extension == null) return null;
+
+                reader.setInput(in, true, true);
+                return new ImageInfo(extension, reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * decodes image file, if it is not larger than limit. Dimensions are read from header first,
+     * so image, which is small file but huge bitmap, is never decoded
+     * @param file image file
+     * @param maxPixels maximal number of pixels of image
+     * @return decoded image, or null if file is not an image of allowed format
+     * @throws InvalidImageException if image has more pixels than allowed
+     * @throws IOException in case of problem with reading file
+     */
+    static @Nullable BufferedImage read(Path file, long maxPixels) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if(in == null) return null;
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                if(!EXTENSIONS.containsKey(reader.getFormatName().toLowerCase(Locale.ROOT))) return null;
+
+                reader.setInput(in, true, true);
+                checkPixels((long) reader.getWidth(0) * reader.getHeight(0), maxPixels);
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @throws InvalidImageException if image has more pixels than allowed
+     */
+    static void checkPixels(long pixels, long maxPixels) {
+        if(pixels > maxPixels) throw new InvalidImageException("Image must have at most " + maxPixels + " pixels");
+    }
+
+    /**
+     * @param imageName name of image or thumbnail
+     * @return content type of image, or null if image has not allowed extension and must not be served
+     */
+    static @Nullable MediaType mediaTypeOf(String imageName) {
+        String extension = StringUtils.getFilenameExtension(imageName);
+        return extension != null ? MEDIA_TYPES.get(extension.toLowerCase(Locale.ROOT)) : null;
+    }
+}
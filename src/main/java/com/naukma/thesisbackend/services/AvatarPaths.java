@@ -0,0 +1,58 @@
+package com.naukma.thesisbackend.services;
+
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * layout of avatar directory. Images are named by SHA-256 of their content and stored in two levels of subdirectories
+ * by first bytes of the hash, so no directory grows too large. Thumbnails are stored next to their original.
+ * Images saved before this layout (and default image) stay in avatar directory itself
+ */
+final class AvatarPaths {
+
+    /**
+     * content-addressed image name, optionally with thumbnail suffix
+     */
+    private static final Pattern HASH_NAME = Pattern.compile("^([0-9a-f]{2})([0-9a-f]{2})[0-9a-f]{60}\\.[a-z0-9]+(@.*)?$");
+
+    /**
+     * suffix of thumbnail name, added to name of original image
+     */
+    private static final Pattern VARIANT_SUFFIX = Pattern.compile("@[0-9]+\\.(jpg|png)$");
+
+    private AvatarPaths() {
+    }
+
+    /**
+     * @param hash hex SHA-256 of image content
+     * @param extension extension of image file, in lower case
+     * @return name of content-addressed image
+     */
+    static String hashName(String hash, String extension) {
+        return hash + "." + extension;
+    }
+
+    /**
+     * finds name of original image of thumbnail. Names of old images may look like thumbnails,
+     * so both names should be considered
+     * @param fileName name of image or its thumbnail
+     * @return name of original image, or the same name if it is not thumbnail
+     */
+    static String originalName(String fileName) {
+        return VARIANT_SUFFIX.matcher(fileName).replaceFirst("");
+    }
+
+    /**
+     * finds path of image file
+     * @param avatarDirectory root avatar directory
+     * @param imageName name of image or its thumbnail
+     * @return path of image file
+     */
+    static Path resolve(String avatarDirectory, String imageName) {
+        Matcher matcher = HASH_NAME.matcher(imageName);
+        return matcher.matches()
+                ? Path.of(avatarDirectory, matcher.group(1), matcher.group(2), imageName)
+                : Path.of(avatarDirectory, imageName);
+    }
+}
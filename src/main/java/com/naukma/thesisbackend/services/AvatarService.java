@@ -1,60 +1,239 @@
 package com.naukma.thesisbackend.services;
 
+import com.naukma.thesisbackend.cache.AvatarCache;
+import com.naukma.thesisbackend.cache.AvatarCache.CachedAvatar;
+import com.naukma.thesisbackend.exceptions.InvalidImageException;
+import com.naukma.thesisbackend.repositories.UserRepository;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
 
 @Service
 public class AvatarService {
 
+    /**
+     * image, which is returned for users without avatar
+     */
+    public static final String DEFAULT_IMAGE = "no-avatar.png";
+
     @Value("${custom.avatar-directory}")
     private String avatarDirectory;
 
     /**
-     * saves image into avatar directory
+     * maximal size of image, which content is cached in memory. Larger images are streamed from file system
+     */
+    @Value("${custom.avatar-cache.max-inline-bytes}")
+    private long maxInlineBytes;
+
+    /**
+     * maximal number of pixels of uploaded image
+     */
+    @Value("${custom.avatar-max-pixels}")
+    private long maxPixels;
+
+    private final AvatarCache avatarCache;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final UserRepository userRepository;
+
+    /**
+     * time after saving of image, during which it is not deleted even if no user references it
+     */
+    private final Duration gracePeriod;
+
+    public AvatarService(AvatarCache avatarCache,
+                         AvatarThumbnailService avatarThumbnailService,
+                         UserRepository userRepository,
+                         @Value("${custom.avatar-sweep.grace-period-hours}") long gracePeriodHours) {
+        this.avatarCache = avatarCache;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.userRepository = userRepository;
+        this.gracePeriod = Duration.ofHours(gracePeriodHours);
+    }
+
+    /**
+     * saves image into avatar directory under hash of its content. If the same image is already stored, it is reused.
+     * Thumbnails of new image are generated in background
      * @param imageFile image as multipart file
      * @return new image name
      * @throws IOException in case of problem with saving image
+     * @throws InvalidImageException if file is not an image of allowed format
      */
     public String saveImage(MultipartFile imageFile) throws IOException {
-        String fileName = UUID.randomUUID().toString() + "_" + imageFile.getOriginalFilename();
+        Path directory = Files.createDirectories(Path.of(avatarDirectory));
+        //image is hashed while it is written, and moved to its place only after that
+        Path temporary = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(imageFile.getInputStream(), digest)) {
+                Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            //extension is given by content, so file can't be served with other type than its own
+            AvatarFormats.ImageInfo image = AvatarFormats.inspect(temporary);
+            if(image == null) throw new InvalidImageException("Only png, jpeg and gif images are allowed");
+            //thumbnails are generated from decoded image, so its size is limited in pixels, not only in bytes
+            AvatarFormats.checkPixels(image.pixels(), maxPixels);
+
+            String fileName = AvatarPaths.hashName(HexFormat.of().formatHex(digest.digest()), image.extension());
+            Path filePath = AvatarPaths.resolve(avatarDirectory, fileName);
+            if(Files.exists(filePath)){
+                //reused image gets grace period again, so it isn't collected before user references it
+                FileTime now = FileTime.from(Instant.now());
+                Files.setLastModifiedTime(filePath, now);
+                for(String variant : avatarThumbnailService.variantsOf(fileName)){
+                    Path variantPath = AvatarPaths.resolve(avatarDirectory, variant);
+                    if(Files.exists(variantPath)) Files.setLastModifiedTime(variantPath, now);
+                }
+                return fileName;
+            }
 
-        Path filePath = Path.of(avatarDirectory, fileName);
-        Files.copy(imageFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectories(filePath.getParent());
+            Files.move(temporary, filePath, StandardCopyOption.ATOMIC_MOVE);
+            avatarCache.evict(fileName);
+            avatarThumbnailService.generateAsync(fileName);
 
-        return fileName;
+            return fileName;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
     }
 
     /**
-     * retrieves image from server
+     * retrieves image from cache, or from server if it is not cached
      * @param imageName image file name, with extension
-     * @return image
+     * @return image with its hash, modification time and content, if it is small enough to be cached,
+     * or null if there is no such image
      * @throws IOException in case of error in reading file as stream
      */
-    public byte[] getImage(@Nullable String imageName) throws IOException {
+    public @Nullable CachedAvatar getImage(@Nullable String imageName) throws IOException {
         //if there is no image, method will return standard image
-        if(imageName==null||imageName.isEmpty()) imageName = "no-avatar.png";
+        if(imageName==null||imageName.isEmpty()) imageName = DEFAULT_IMAGE;
+
+        try {
+            return avatarCache.get(imageName, this::readImage);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * retrieves thumbnail of image, which is the nearest to requested size
+     * @param imageName image file name, with extension
+     * @param size requested size in pixels, null for original image
+     * @return thumbnail, or original image if there is no thumbnail of such size yet, or null if there is no such image
+     * @throws IOException in case of error in reading file as stream
+     */
+    public @Nullable CachedAvatar getImage(@Nullable String imageName, @Nullable Integer size) throws IOException {
+        if(imageName==null||imageName.isEmpty()) imageName = DEFAULT_IMAGE;
 
-        Path filePath = Path.of(avatarDirectory, imageName);
+        if(size != null){
+            String variant = avatarThumbnailService.variantFor(imageName, size);
+            CachedAvatar thumbnail = variant != null ? getImage(variant) : null;
+            if(thumbnail != null) return thumbnail;
+        }
+        return getImage(imageName);
+    }
+
+    /**
+     * retrieves image by name, which was given to client, for example in avatar url
+     * @param imageName image file name, with extension
+     * @param size requested size in pixels, null for original image
+     * @return thumbnail or original image, or null if there is no such image or its name is invalid
+     * @throws IOException in case of error in reading file as stream
+     */
+    public @Nullable CachedAvatar getStoredImage(String imageName, @Nullable Integer size) throws IOException {
+        //name comes from request, so it must not point outside of avatar directory
+        if(imageName.isEmpty() || imageName.startsWith(".") || imageName.contains("/") || imageName.contains("\\")) return null;
+
+        return getImage(imageName, size);
+    }
+
+    /**
+     * checks if thumbnail should be served for requested size, so original image is only temporary answer
+     * @param imageName image file name, with extension
+     * @param size requested size in pixels
+     * @return true if image has thumbnail for requested size
+     */
+    public boolean hasThumbnailFor(String imageName, int size) {
+        return avatarThumbnailService.variantFor(imageName, size) != null;
+    }
+
+    private @Nullable CachedAvatar readImage(String imageName) {
+        //files of other types, stored before formats were checked, are not served
+        MediaType contentType = AvatarFormats.mediaTypeOf(imageName);
+        Path filePath = AvatarPaths.resolve(avatarDirectory, imageName);
+        if(contentType == null || !Files.exists(filePath)) return null;
+
+        try {
+            long length = Files.size(filePath);
+            MessageDigest digest = sha256();
+            byte[] bytes = null;
+
+            //large image is only hashed, without keeping its content in memory
+            if(length <= maxInlineBytes){
+                bytes = Files.readAllBytes(filePath);
+                digest.update(bytes);
+            }
+            else{
+                try (InputStream in = new DigestInputStream(Files.newInputStream(filePath), digest)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
 
-        return Files.exists(filePath)?Files.readAllBytes(filePath):null;
+            String etag = "\"" + HexFormat.of().formatHex(digest.digest()) + "\"";
+            return new CachedAvatar(filePath.toAbsolutePath().normalize(), length, contentType, etag,
+                    Files.getLastModifiedTime(filePath).toInstant(), bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
-     * deletes image from server
+     * deletes image with its thumbnails from server. Same image can be avatar of several users,
+     * so it is kept while any user still has it. Recently saved image is kept too, since it could be reused
+     * by upload, which is not referenced by user yet. Such images are deleted later by {@link AvatarSweepService}
      * @param imageName name of image to delete
-     * @return true if image was deleted successfully, false if it was not located
+     * @return true if image was deleted successfully, false if it was not located or is still used
      * @throws IOException if delete operation failed
      */
     public boolean deleteImage(String imageName) throws IOException {
-        Path filePath = Path.of(avatarDirectory, imageName);
+        if(imageName.equals(DEFAULT_IMAGE) || userRepository.existsByAvatar(imageName)) return false;
+
+        Path filePath = AvatarPaths.resolve(avatarDirectory, imageName);
+        if(Files.exists(filePath) && Files.getLastModifiedTime(filePath).toInstant().isAfter(Instant.now().minus(gracePeriod))){
+            return false;
+        }
+        avatarCache.evict(imageName);
+
+        for(String variant : avatarThumbnailService.variantsOf(imageName)){
+            avatarCache.evict(variant);
+            Files.deleteIfExists(AvatarPaths.resolve(avatarDirectory, variant));
+        }
 
         if(Files.exists(filePath)){
             Files.delete(filePath);
@@ -0,0 +1,144 @@
+package com.naukma.thesisbackend.services;
+
+import com.naukma.thesisbackend.cache.AvatarCache;
+import com.naukma.thesisbackend.dtos.AvatarSweepReportDto;
+import com.naukma.thesisbackend.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * background job which deletes avatar images and thumbnails, which are not referenced by any user.
+ * Such files are left by replaced or deleted avatars, deleted users and failed requests.
+ * Files are checked only after grace period, since just uploaded image is referenced by user only after it is saved
+ */
+@Service
+public class AvatarSweepService {
+
+    private static final Logger log = LoggerFactory.getLogger(AvatarSweepService.class);
+
+    /**
+     * suffix of unfinished uploads and thumbnails
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final UserRepository userRepository;
+    private final AvatarCache avatarCache;
+
+    @Value("${custom.avatar-directory}")
+    private String avatarDirectory;
+
+    /**
+     * number of files, checked with one query
+     */
+    @Value("${custom.avatar-sweep.batch-size}")
+    private int batchSize;
+
+    @Value("${custom.avatar-sweep.grace-period-hours}")
+    private long gracePeriodHours;
+
+    /**
+     * file, which can be deleted if its image is not referenced
+     * @param name name of image or thumbnail
+     * @param originalName name of original image of thumbnail
+     */
+    private record Candidate(Path path, String name, String originalName, long size) {
+    }
+
+    public AvatarSweepService(UserRepository userRepository, AvatarCache avatarCache) {
+        this.userRepository = userRepository;
+        this.avatarCache = avatarCache;
+    }
+
+    /**
+     * streams avatar directory and deletes unreferenced files older than grace period, batch by batch
+     * @return numbers of scanned and deleted files, and their size
+     */
+    @Scheduled(cron = "${custom.avatar-sweep.cron}")
+    public AvatarSweepReportDto sweep() {
+        long start = System.currentTimeMillis();
+        Instant collectedBefore = Instant.now().minus(Duration.ofHours(gracePeriodHours));
+        long scanned = 0;
+        long[] deleted = new long[2];
+
+        List<Candidate> batch = new ArrayList<>(batchSize);
+        try (Stream<Path> files = Files.walk(Path.of(avatarDirectory))) {
+            for(Path path : (Iterable<Path>) files::iterator){
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    //file was deleted after it was listed
+                    continue;
+                }
+                if(!attributes.isRegularFile()) continue;
+
+                scanned++;
+                String name = path.getFileName().toString();
+                String originalName = AvatarPaths.originalName(name);
+                if(originalName.equals(AvatarService.DEFAULT_IMAGE)
+                        || attributes.lastModifiedTime().toInstant().isAfter(collectedBefore)) continue;
+
+                batch.add(new Candidate(path, name, originalName, attributes.size()));
+                if(batch.size() >= batchSize){
+                    deleteUnreferenced(batch, collectedBefore, deleted);
+                    batch.clear();
+                }
+            }
+            deleteUnreferenced(batch, collectedBefore, deleted);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        AvatarSweepReportDto report = new AvatarSweepReportDto(scanned, deleted[0], deleted[1], System.currentTimeMillis() - start);
+        log.info("Avatar sweep deleted {} of {} files, reclaimed {} bytes", report.deletedFiles(), report.scannedFiles(), report.reclaimedBytes());
+        return report;
+    }
+
+    /**
+     * deletes files of batch, which are not referenced by any user
+     * @param collectedBefore only files modified before this time are deleted
+     * @param deleted number of deleted files and their size, incremented by this batch
+     */
+    private void deleteUnreferenced(List<Candidate> batch, Instant collectedBefore, long[] deleted) throws IOException {
+        if(batch.isEmpty()) return;
+
+        //old image names can look like thumbnails, so file is kept if either of its names is referenced
+        Set<String> names = new HashSet<>();
+        for(Candidate candidate : batch){
+            if(candidate.name().endsWith(TEMPORARY_SUFFIX)) continue;
+            names.add(candidate.name());
+            names.add(candidate.originalName());
+        }
+        Set<String> referenced = names.isEmpty() ? Set.of() : userRepository.findReferencedAvatars(names);
+
+        for(Candidate candidate : batch){
+            if(referenced.contains(candidate.name()) || referenced.contains(candidate.originalName())) continue;
+            //image could be reused by new upload after it was listed
+            if(!Files.exists(candidate.path())
+                    || Files.getLastModifiedTime(candidate.path()).toInstant().isAfter(collectedBefore)) continue;
+
+            avatarCache.evict(candidate.name());
+            if(Files.deleteIfExists(candidate.path())){
+                deleted[0]++;
+                deleted[1] += candidate.size();
+            }
+        }
+    }
+}
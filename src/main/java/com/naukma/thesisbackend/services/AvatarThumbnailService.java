@@ -0,0 +1,208 @@
+package com.naukma.thesisbackend.services;
+
+import com.naukma.thesisbackend.exceptions.InvalidImageException;
+import jakarta.annotation.PreDestroy;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generates square thumbnails of uploaded avatars in background.
+ * Image is decoded once, center-cropped and resized into every configured size, and variants are stored
+ * next to the original. Until variants are ready (or if they couldn't be generated) original image is served
+ */
+@Service
+public class AvatarThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(AvatarThumbnailService.class);
+
+    @Value("${custom.avatar-directory}")
+    private String avatarDirectory;
+
+    /**
+     * sizes of thumbnails in pixels, in ascending order
+     */
+    private final List<Integer> sizes;
+
+    private final float jpegQuality;
+
+    /**
+     * maximal number of pixels of decoded image
+     */
+    private final long maxPixels;
+
+    private final ExecutorService executor;
+
+    public AvatarThumbnailService(@Value("${custom.avatar-thumbnails.sizes}") List<Integer> sizes,
+                                  @Value("${custom.avatar-thumbnails.jpeg-quality}") float jpegQuality,
+                                  @Value("${custom.avatar-thumbnails.threads}") int threads,
+                                  @Value("${custom.avatar-thumbnails.queue-capacity}") int queueCapacity,
+                                  @Value("${custom.avatar-max-pixels}") long maxPixels) {
+        this.sizes = sizes.stream().sorted().distinct().toList();
+        this.jpegQuality = jpegQuality;
+        this.maxPixels = maxPixels;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("avatar-thumbnail-", 0).daemon().factory());
+    }
+
+    /**
+     * generates thumbnails of default image, if they don't exist yet, since it is shown for most of users
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void generateDefaultThumbnails() {
+        String firstVariant = variantName(AvatarService.DEFAULT_IMAGE, sizes.get(0));
+        if(Files.exists(Path.of(avatarDirectory, AvatarService.DEFAULT_IMAGE)) && !Files.exists(Path.of(avatarDirectory, firstVariant))){
+            generateAsync(AvatarService.DEFAULT_IMAGE);
+        }
+    }
+
+    /**
+     * schedules generation of thumbnails of saved image. If there are too many pending images, thumbnails are skipped
+     * @param imageName name of original image in avatar directory
+     */
+    public void generateAsync(String imageName) {
+        try {
+            executor.execute(() -> generate(imageName));
+        } catch (RejectedExecutionException e) {
+            log.warn("Thumbnails of avatar {} are skipped, queue is full", imageName);
+        }
+    }
+
+    /**
+     * finds thumbnail, which should be served for requested size. It is the smallest one, which is not smaller than requested
+     * @param imageName name of original image
+     * @param size requested size in pixels
+     * @return name of thumbnail, or null if original image should be served
+     */
+    public @Nullable String variantFor(String imageName, int size) {
+        return sizes.stream()
+                .filter(variantSize -> variantSize >= size)
+                .findFirst()
+                .map(variantSize -> variantName(imageName, variantSize))
+                .orElse(null);
+    }
+
+    /**
+     * @param imageName name of original image
+     * @return names of all possible thumbnails of image
+     */
+    public List<String> variantsOf(String imageName) {
+        return sizes.stream().map(size -> variantName(imageName, size)).toList();
+    }
+
+    /**
+     * images without transparency are stored as jpeg, others as png
+     */
+    private static String variantName(String imageName, int size) {
+        return imageName + "@" + size + (isOpaqueFormat(imageName) ? ".jpg" : ".png");
+    }
+
+    private static boolean isOpaqueFormat(String imageName) {
+        String name = imageName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".bmp");
+    }
+
+    private void generate(String imageName) {
+        Path original = AvatarPaths.resolve(avatarDirectory, imageName);
+        try {
+            BufferedImage image = AvatarFormats.read(original, maxPixels);
+            if(image == null){
+                log.warn("Avatar {} has unsupported format, thumbnails are not generated", imageName);
+                return;
+            }
+
+            BufferedImage square = cropToSquare(image);
+            for(int size : sizes){
+                //images aren't upscaled, such requests get the original
+                if(size > square.getWidth()) break;
+
+                writeVariant(resize(square, size, isOpaqueFormat(imageName)), AvatarPaths.resolve(avatarDirectory, variantName(imageName, size)));
+            }
+
+            //avatar could be deleted while its thumbnails were generated
+            if(!Files.exists(original)){
+                for(String variant : variantsOf(imageName)) Files.deleteIfExists(AvatarPaths.resolve(avatarDirectory, variant));
+            }
+        } catch (InvalidImageException e) {
+            log.warn("Avatar {} is too large, thumbnails are not generated", imageName);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to generate thumbnails of avatar {}", imageName, e);
+        }
+    }
+
+    private static BufferedImage cropToSquare(BufferedImage image) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        return image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2, side, side);
+    }
+
+    /**
+     * resizes image by halving it while it is more than twice larger, which gives smooth result with bilinear interpolation
+     */
+    private static BufferedImage resize(BufferedImage image, int size, boolean opaque) {
+        BufferedImage result = image;
+        int current = image.getWidth();
+        do {
+            current = Math.max(current / 2, size);
+            BufferedImage step = new BufferedImage(current, current, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(result, 0, 0, current, current, null);
+            graphics.dispose();
+            result = step;
+        } while (current > size);
+        return result;
+    }
+
+    /**
+     * writes variant into temporary file and moves it, so incomplete thumbnail is never served
+     */
+    private void writeVariant(BufferedImage image, Path target) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        String format = image.getType() == BufferedImage.TYPE_INT_RGB ? "jpg" : "png";
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(temporary.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if(format.equals("jpg")){
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,14 +1,22 @@
 package com.naukma.thesisbackend.services;
 
 import com.naukma.thesisbackend.dtos.CommentDto;
+import com.naukma.thesisbackend.dtos.CursorPageDto;
 import com.naukma.thesisbackend.entities.*;
-import com.naukma.thesisbackend.entities.keys.CommentLikeKey;
+import com.naukma.thesisbackend.enums.LikeTarget;
+import com.naukma.thesisbackend.exceptions.AuthenticationFailedException;
 import com.naukma.thesisbackend.exceptions.ForbiddenException;
+import com.naukma.thesisbackend.pagination.KeysetCursor;
+import com.naukma.thesisbackend.projections.CommentSummary;
 import com.naukma.thesisbackend.repositories.CommentLikeRepository;
 import com.naukma.thesisbackend.repositories.CommentRepository;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository;
+import com.naukma.thesisbackend.repositories.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -18,50 +26,225 @@ public class CommentService {
 
     private final CommentRepository commentRepository;
     private final CommentLikeRepository commentLikeRepository;
+    private final LikeJdbcRepository likeJdbcRepository;
+    private final LikeWriteBehindBuffer likeBuffer;
+    private final UserRepository userRepository;
 
     public CommentService(CommentRepository commentRepository,
-                          CommentLikeRepository commentLikeRepository){
+                          CommentLikeRepository commentLikeRepository,
+                          LikeJdbcRepository likeJdbcRepository,
+                          LikeWriteBehindBuffer likeBuffer,
+                          UserRepository userRepository){
         this.commentRepository = commentRepository;
         this.commentLikeRepository = commentLikeRepository;
+        this.likeJdbcRepository = likeJdbcRepository;
+        this.likeBuffer = likeBuffer;
+        this.userRepository = userRepository;
     }
 
     /**
-     * recursively maps comment object to commentDto object
+     * builds comment tree of post from one flat query.
+     * Comments are sorted from newest to oldest on every level
+     * @param postId id of post
+     * @param userId id of currently registered user (for personalized response)
+     * @return top-level comments of post with nested replies
+     */
+    public List<CommentDto> getPostCommentTree(Long postId, @Nullable String userId){
+        List<CommentSummary> comments = commentRepository.findCommentSummariesOfPost(postId);
+        Map<Long, CommentDto> commentDtos = assembleCommentTree(comments, getLikedCommentIdsOfPost(userId, postId), null);
+
+        return comments
+                .stream()
+                .filter(comment -> comment.replyTo() == null)
+                .map(comment -> commentDtos.get(comment.commentId()))
+                .toList();
+    }
+
+    /**
+     * maps comment to {@link CommentDto} together with all its nested replies.
+     * Only subtree of comment is loaded, one query per level of replies
      * @param comment comment entity object
      * @param userId id of currently registered user (for personalized response)
      * @return Comment Dto
      */
-    public CommentDto commentToCommentDto(Comment comment,
-                                          @Nullable String userId){
-
-        List<CommentDto> replies = new ArrayList<>();
-        if(comment.getReplies()!=null&&!comment.getReplies().isEmpty()){
-            replies = comment
-                    .getReplies()
-                    .stream()
-                    .sorted(Comparator.comparing(Comment::getCommentedDate).reversed())
-                    .map(reply->commentToCommentDto(reply, userId))
-                    .toList();
+    public CommentDto getCommentThread(Comment comment, @Nullable String userId){
+        CommentSummary root = commentRepository.findCommentSummary(comment.getCommentId())
+                .orElseThrow(() -> new EntityNotFoundException("No such comment found"));
+
+        List<CommentSummary> thread = new ArrayList<>();
+        thread.add(root);
+        List<CommentSummary> level = List.of(root);
+        while(!level.isEmpty()){
+            level = commentRepository.findAllReplySummaries(level.stream().map(CommentSummary::commentId).toList());
+            thread.addAll(level);
         }
 
-        boolean isLiked = userId != null && !userId.isEmpty() && (comment
-                .getCommentLikes()
-                .stream()
-                .anyMatch(like -> Objects.equals(like.getUser().getUserId(), userId)));
+        return assembleCommentTree(thread, getLikedCommentIdsOfPost(userId, root.postId()), null)
+                .get(root.commentId());
+    }
+
+    /**
+     * retrieves one page of top-level comments of post, with replies nested down to limited depth
+     * @param postId id of post
+     * @param cursor cursor of page, null for the first page
+     * @param size number of top-level comments in page
+     * @param depth number of reply levels to include, 0 for comments without replies
+     * @param repliesSize maximal number of replies included for every comment
+     * @param userId id of currently registered user (for personalized response)
+     * @return page of comment threads with cursor of the next page
+     */
+    public CursorPageDto<CommentDto> getPostCommentThreads(Long postId,
+                                                           @Nullable String cursor,
+                                                           int size,
+                                                           int depth,
+                                                           int repliesSize,
+                                                           @Nullable String userId){
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+
+        List<CommentSummary> comments = commentRepository.findTopLevelCommentSummaries(
+                postId,
+                keysetCursor != null ? keysetCursor.date() : null,
+                keysetCursor != null ? keysetCursor.id() : null,
+                PageRequest.of(0, size + 1));
+
+        return toCommentThreadsPage(comments, size, depth, repliesSize, getLikedCommentIdsOfPost(userId, postId));
+    }
 
-        return new CommentDto(
+    /**
+     * retrieves one page of direct replies of comment, with their replies nested down to limited depth.
+     * Used for loading replies, which were not included into comment thread
+     * @param comment replied comment
+     * @param cursor value of repliesCursor or nextCursor, null for the first page
+     * @param size number of replies in page
+     * @param depth number of nested reply levels to include
+     * @param repliesSize maximal number of nested replies included for every reply
+     * @param userId id of currently registered user (for personalized response)
+     * @return page of replies with cursor of the next page
+     */
+    public CursorPageDto<CommentDto> getCommentReplies(Comment comment,
+                                                       @Nullable String cursor,
+                                                       int size,
+                                                       int depth,
+                                                       int repliesSize,
+                                                       @Nullable String userId){
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+
+        List<CommentSummary> replies = commentRepository.findReplySummaries(
                 comment.getCommentId(),
-                comment.getPost().getPostId(),
-                comment.getContent(),
-                comment.getCommentAuthor().getUserId(),
-                comment.getCommentAuthor().getNickname(),
-                comment.isEdited(),
-                replies,
-                comment.getReplyTo()!=null?comment.getReplyTo().getCommentId():null,
-                comment.getCommentLikes().size(),
-                isLiked,
-                comment.getCommentedDate()
-                );
+                keysetCursor != null ? keysetCursor.date() : null,
+                keysetCursor != null ? keysetCursor.id() : null,
+                PageRequest.of(0, size + 1));
+
+        return toCommentThreadsPage(replies, size, depth, repliesSize, getLikedCommentIdsOfPost(userId, comment.getPost().getPostId()));
+    }
+
+    /**
+     * loads limited number of replies for page of comments level by level, one query per level
+     * @param comments comments of page, with one extra comment if there is next page
+     */
+    private CursorPageDto<CommentDto> toCommentThreadsPage(List<CommentSummary> comments,
+                                                           int size,
+                                                           int depth,
+                                                           int repliesSize,
+                                                           Set<Long> likedCommentIds){
+        String nextCursor = null;
+        if(comments.size() > size){
+            comments = comments.subList(0, size);
+            CommentSummary last = comments.get(size - 1);
+            nextCursor = new KeysetCursor(last.commentedDate(), last.commentId()).encode();
+        }
+
+        List<CommentSummary> thread = new ArrayList<>(comments);
+        List<CommentSummary> level = comments;
+        for(int i = 0; i < depth && !level.isEmpty() && repliesSize > 0; i++){
+            level = commentRepository.findLatestReplySummaries(level.stream().map(CommentSummary::commentId).toList(), repliesSize);
+            thread.addAll(level);
+        }
+
+        Map<Long, Long> replyCounts = new HashMap<>();
+        if(!thread.isEmpty()){
+            for(Object[] replyCount : commentRepository.countReplies(thread.stream().map(CommentSummary::commentId).toList())){
+                replyCounts.put((Long) replyCount[0], (Long) replyCount[1]);
+            }
+        }
+
+        Map<Long, CommentDto> commentDtos = assembleCommentTree(thread, likedCommentIds, replyCounts);
+        return new CursorPageDto<>(
+                comments.stream().map(comment -> commentDtos.get(comment.commentId())).toList(),
+                nextCursor);
+    }
+
+    /**
+     * assembles flat list of comments into trees without recursion.
+     * Every comment is mapped after all its replies, so immutable {@link CommentDto} can be created at once
+     * @param comments comments of one post, ordered as replies should be ordered
+     * @param likedCommentIds ids of comments liked by current user
+     * @param replyCounts total numbers of replies by comment id, if list contains only part of replies.
+     *                    If it is null, list is considered to contain all replies
+     * @return every comment of list, mapped by its id
+     */
+    private Map<Long, CommentDto> assembleCommentTree(List<CommentSummary> comments,
+                                                      Set<Long> likedCommentIds,
+                                                      @Nullable Map<Long, Long> replyCounts){
+        Set<Long> commentIds = new HashSet<>();
+        comments.forEach(comment -> commentIds.add(comment.commentId()));
+
+        Map<Long, List<CommentSummary>> repliesByCommentId = new HashMap<>();
+        List<CommentSummary> parentsFirst = new ArrayList<>(comments.size());
+
+        for(CommentSummary comment : comments){
+            if(comment.replyTo() == null || !commentIds.contains(comment.replyTo())) parentsFirst.add(comment);
+            else repliesByCommentId.computeIfAbsent(comment.replyTo(), id -> new ArrayList<>()).add(comment);
+        }
+
+        //breadth-first order guarantees that parent goes before its replies
+        for(int i = 0; i < parentsFirst.size(); i++){
+            parentsFirst.addAll(repliesByCommentId.getOrDefault(parentsFirst.get(i).commentId(), List.of()));
+        }
+
+        Map<Long, CommentDto> commentDtos = new HashMap<>();
+        for(int i = parentsFirst.size() - 1; i >= 0; i--){
+            CommentSummary comment = parentsFirst.get(i);
+
+            List<CommentSummary> replies = repliesByCommentId.getOrDefault(comment.commentId(), List.of());
+            int replyCount = replyCounts != null
+                    ? replyCounts.getOrDefault(comment.commentId(), 0L).intValue()
+                    : replies.size();
+
+            String repliesCursor = null;
+            if(!replies.isEmpty() && replies.size() < replyCount){
+                CommentSummary lastReply = replies.get(replies.size() - 1);
+                repliesCursor = new KeysetCursor(lastReply.commentedDate(), lastReply.commentId()).encode();
+            }
+
+            commentDtos.put(comment.commentId(), new CommentDto(
+                    comment.commentId(),
+                    comment.postId(),
+                    comment.content(),
+                    comment.authorUserId(),
+                    comment.authorNickname(),
+                    comment.edited(),
+                    replies.stream().map(reply -> commentDtos.get(reply.commentId())).toList(),
+                    replyCount,
+                    repliesCursor,
+                    comment.replyTo(),
+                    likeBuffer.applyPending(LikeTarget.COMMENT, comment.commentId(), comment.likeCount()),
+                    likedCommentIds.contains(comment.commentId()),
+                    comment.commentedDate()));
+        }
+        return commentDtos;
+    }
+
+    /**
+     * finds all comments under the post which are liked by user
+     * @param userId id of current user, can be null
+     * @param postId id of post
+     * @return ids of liked comments, empty set if user is not authenticated
+     */
+    public Set<Long> getLikedCommentIdsOfPost(@Nullable String userId, Long postId){
+        if(userId == null || userId.isEmpty()) return Set.of();
+
+        return likeBuffer.applyPending(LikeTarget.COMMENT, userId, commentLikeRepository.findLikedCommentIdsOfPost(userId, postId));
     }
 
 
@@ -75,46 +258,95 @@ public class CommentService {
     }
 
     /**
-     * saves comment to database
+     * saves new or edited comment to database
      * @param comment comment to save
      * @return saved comment as {@link CommentDto}
      */
+    @Transactional
     public CommentDto save(Comment comment){
-        return commentToCommentDto(commentRepository.save(comment), null);
+        boolean created = comment.getCommentId() == null;
+
+        //counter of author is updated first, it also checks that author was not deleted after token was issued
+        if(created && userRepository.incrementCommentCount(comment.getCommentAuthor().getUserId(), 1) == 0)
+            throw new AuthenticationFailedException("User no longer exists");
+
+        Comment savedComment = commentRepository.save(comment);
+        if(!created) return getCommentThread(savedComment, null);
+
+        //new comment has no replies yet
+        CommentSummary summary = commentRepository.findCommentSummary(savedComment.getCommentId())
+                .orElseThrow(() -> new EntityNotFoundException("No such comment found"));
+        return assembleCommentTree(List.of(summary), Set.of(), null).get(summary.commentId());
     }
 
     /**
-     * deletes comment from database
+     * deletes comment from database together with all its replies
      * @param comment comment to delete
      */
+    @Transactional
     public void delete(Comment comment){
+        //replies are deleted in cascade, so they are loaded anyway, and counters of their authors are changed too
+        Map<String, Integer> deletedByAuthor = new HashMap<>();
+        Deque<Comment> thread = new ArrayDeque<>(List.of(comment));
+        while(!thread.isEmpty()){
+            Comment deleted = thread.pop();
+            deletedByAuthor.merge(deleted.getCommentAuthor().getUserId(), 1, Integer::sum);
+            thread.addAll(deleted.getReplies());
+        }
+        deletedByAuthor.forEach((userId, count) -> userRepository.incrementCommentCount(userId, -count));
+
         commentRepository.delete(comment);
     }
 
     /**
      * sets/removes like from comment
-     * @param user user who performs this operation
+     * @param userId id of user who performs this operation
      * @param commentId id of comment
      * @return true if comment is now liked, false otherwise
      */
-    public boolean toggleLike(User user, Long commentId){
-        Comment comment = commentRepository
-                .findCommentByCommentId(commentId)
-                .orElseThrow(() -> new EntityNotFoundException("Comment not found"));
+    @Transactional
+    public boolean toggleLike(String userId, Long commentId){
+        if(likeBuffer.isEnabled()){
+            if(!commentRepository.existsById(commentId)) throw new EntityNotFoundException("Comment not found");
 
-        Optional<CommentLike> commentLike = commentLikeRepository
-                .findByUserAndComment(user, comment);
+            return likeBuffer.toggle(LikeTarget.COMMENT, userId, commentId,
+                    () -> likeJdbcRepository.existsLike(LikeTarget.COMMENT, userId, commentId));
+        }
 
-        if(commentLike.isPresent()){
-            commentLikeRepository.delete(commentLike.get());
+        if(likeJdbcRepository.deleteLike(LikeTarget.COMMENT, userId, commentId)){
+            commentRepository.incrementLikeCount(commentId, -1);
             return false;
         }
-        else{
-            CommentLike newCommentLike = new CommentLike(user, comment);
-            newCommentLike.setId(new CommentLikeKey());
-            commentLikeRepository.save(newCommentLike);
-            return true;
+        return setLike(userId, commentId, true);
+    }
+
+    /**
+     * idempotent method for setting or removing like from comment.
+     * Like is written with single conditional statement, without loading the comment
+     * @param userId id of user who performs this operation
+     * @param commentId id of comment
+     * @param liked true to set like, false to remove it
+     * @return true if comment is now liked, false otherwise
+     */
+    @Transactional
+    public boolean setLike(String userId, Long commentId, boolean liked){
+        if(likeBuffer.isEnabled()){
+            if(!commentRepository.existsById(commentId)) throw new EntityNotFoundException("Comment not found");
+
+            likeBuffer.set(LikeTarget.COMMENT, userId, commentId, liked,
+                    () -> likeJdbcRepository.existsLike(LikeTarget.COMMENT, userId, commentId));
+            return liked;
         }
+
+        boolean changed = liked
+                ? likeJdbcRepository.insertLike(LikeTarget.COMMENT, userId, commentId)
+                : likeJdbcRepository.deleteLike(LikeTarget.COMMENT, userId, commentId);
+
+        if(changed) commentRepository.incrementLikeCount(commentId, liked ? 1 : -1);
+        //nothing was written either because like is already in requested state, or because there is no such comment
+        else if(!commentRepository.existsById(commentId)) throw new EntityNotFoundException("Comment not found");
+
+        return liked;
     }
 
     /**
@@ -0,0 +1,109 @@
+package com.naukma.thesisbackend.services;
+
+import com.naukma.thesisbackend.repositories.CommentRepository;
+import com.naukma.thesisbackend.repositories.PostRepository;
+import com.naukma.thesisbackend.repositories.UserRepository;
+import com.naukma.thesisbackend.search.LikeRankingIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * background job which repairs denormalized like counters of posts and comments, and counters of users.
+ * Counters are updated together with likes, but can drift when likes are deleted in cascade (for example with user)
+ */
+@Service
+public class LikeCountReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeCountReconciliationService.class);
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final UserRepository userRepository;
+    private final LikeRankingIndex likeRankingIndex;
+
+    /**
+     * number of ids, checked in one transaction
+     */
+    @Value("${custom.like-count-reconciliation.batch-size}")
+    private long batchSize;
+
+    /**
+     * true to reconcile counters of all users on start, it is needed only once after counters were added
+     */
+    @Value("${custom.like-count-reconciliation.users-on-startup}")
+    private boolean usersOnStartup;
+
+    public LikeCountReconciliationService(PostRepository postRepository,
+                                          CommentRepository commentRepository,
+                                          UserRepository userRepository,
+                                          LikeRankingIndex likeRankingIndex) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.userRepository = userRepository;
+        this.likeRankingIndex = likeRankingIndex;
+    }
+
+    /**
+     * recalculates like counters of all posts and comments, batch by batch
+     * @return total number of repaired posts and comments
+     */
+    @Scheduled(cron = "${custom.like-count-reconciliation.cron}")
+    public int reconcile(){
+        int repairedPosts = reconcileInBatches(postRepository.findMaxPostId(), postRepository::reconcileLikeCounts);
+        int repairedComments = reconcileInBatches(commentRepository.findMaxCommentId(), commentRepository::reconcileLikeCounts);
+
+        if(repairedPosts > 0 || repairedComments > 0){
+            log.warn("Repaired like counters of {} posts and {} comments", repairedPosts, repairedComments);
+        }
+        if(repairedPosts > 0) likeRankingIndex.rebuild();
+
+        //received likes of users are derived from like counters of posts, so they are repaired after them
+        reconcileUserCounters();
+        return repairedPosts + repairedComments;
+    }
+
+    /**
+     * fills counters of users, who were registered before counters were added. It scans all users,
+     * so it is done on start only if enabled, otherwise counters are repaired by scheduled {@link #reconcile()}.
+     * It should be enabled for the first start after upgrade of existing database, and disabled afterwards
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileUserCountersOnStartup(){
+        if(usersOnStartup) reconcileUserCounters();
+    }
+
+    /**
+     * recalculates post, comment and received like counters of all users, batch by batch
+     * @return number of repaired users
+     */
+    public int reconcileUserCounters(){
+        int repaired = 0;
+        List<String> userIds = userRepository.findUserIdsAfter("", PageRequest.of(0, (int) batchSize));
+        while(!userIds.isEmpty()){
+            repaired += userRepository.reconcileCounters(userIds);
+            userIds = userRepository.findUserIdsAfter(userIds.get(userIds.size() - 1), PageRequest.of(0, (int) batchSize));
+        }
+
+        if(repaired > 0) log.warn("Repaired counters of {} users", repaired);
+        return repaired;
+    }
+
+    private int reconcileInBatches(Long maxId, ToIntBiFunction<Long, Long> reconcileRange){
+        if(maxId == null) return 0;
+
+        int repaired = 0;
+        for(long fromId = 1; fromId <= maxId; fromId += batchSize){
+            repaired += reconcileRange.applyAsInt(fromId, fromId + batchSize - 1);
+        }
+        return repaired;
+    }
+}
@@ -0,0 +1,232 @@
+package com.naukma.thesisbackend.services;
+
+import com.naukma.thesisbackend.cache.FeedCache;
+import com.naukma.thesisbackend.enums.LikeTarget;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository.LikeChange;
+import com.naukma.thesisbackend.search.LikeRankingIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * optional write-behind buffer for likes. When enabled, like toggles only change pending state in memory,
+ * repeated toggles of the same like cancel each other, and remaining changes are written to database in batches.
+ * Pending state is applied to liked ids and like counters on reads, so users see their likes immediately
+ */
+@Service
+public class LikeWriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeWriteBehindBuffer.class);
+
+    private final LikeJdbcRepository likeJdbcRepository;
+    private final FeedCache feedCache;
+    private final LikeRankingIndex likeRankingIndex;
+    private final TrendingScoreService trendingScoreService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${custom.likes.write-behind.enabled}")
+    private boolean enabled;
+
+    /**
+     * liked post or comment
+     */
+    private record TargetKey(LikeTarget target, Long targetId) {
+    }
+
+    /**
+     * like state, which differs from state in database
+     */
+    private record PendingLike(boolean liked, LocalDateTime likeDate) {
+    }
+
+    /**
+     * pending likes, grouped by user. Like is present here only if its state differs from database
+     */
+    private final Map<String, Map<TargetKey, PendingLike>> pendingLikes = new ConcurrentHashMap<>();
+
+    /**
+     * differences between like counters in database and counters with pending likes applied
+     */
+    private final Map<TargetKey, Integer> pendingDeltas = new ConcurrentHashMap<>();
+
+    /**
+     * changes of pending state are done under read lock, and flush is done under write lock,
+     * so database state of like can't change between reading it and buffering new state
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public LikeWriteBehindBuffer(LikeJdbcRepository likeJdbcRepository,
+                                 FeedCache feedCache,
+                                 LikeRankingIndex likeRankingIndex,
+                                 TrendingScoreService trendingScoreService,
+                                 PlatformTransactionManager transactionManager) {
+        this.likeJdbcRepository = likeJdbcRepository;
+        this.feedCache = feedCache;
+        this.likeRankingIndex = likeRankingIndex;
+        this.trendingScoreService = trendingScoreService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @return true if likes should be toggled through this buffer
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * toggles like in memory
+     * @param target kind of liked entity
+     * @param userId id of user
+     * @param targetId id of liked post or comment
+     * @param likedInDatabase checks if like exists in database, called only if there is no pending state
+     * @return true if post or comment is now liked, false otherwise
+     */
+    public boolean toggle(LikeTarget target, String userId, Long targetId, BooleanSupplier likedInDatabase) {
+        return update(target, userId, targetId, liked -> !liked, likedInDatabase)[0];
+    }
+
+    /**
+     * sets or removes like in memory
+     * @param target kind of liked entity
+     * @param userId id of user
+     * @param targetId id of liked post or comment
+     * @param liked true to set like, false to remove it
+     * @param likedInDatabase checks if like exists in database, called only if there is no pending state
+     * @return true if state of like was changed
+     */
+    public boolean set(LikeTarget target, String userId, Long targetId, boolean liked, BooleanSupplier likedInDatabase) {
+        return update(target, userId, targetId, current -> liked, likedInDatabase)[1];
+    }
+
+    /**
+     * @return new state of like and flag if it was changed
+     */
+    private boolean[] update(LikeTarget target, String userId, Long targetId, UnaryOperator<Boolean> newState, BooleanSupplier likedInDatabase) {
+        TargetKey key = new TargetKey(target, targetId);
+        //the third flag is set when pending state was changed
+        boolean[] result = new boolean[3];
+
+        lock.readLock().lock();
+        try {
+            Map<TargetKey, PendingLike> pendingOfUser = pendingLikes.computeIfAbsent(userId, id -> new ConcurrentHashMap<>());
+            while(!result[2]){
+                //database is queried outside of compute, so the map is not locked while query runs.
+                //Flush can't run under read lock, so database state stays valid until it is used
+                Boolean databaseState = pendingOfUser.containsKey(key) ? null : likedInDatabase.getAsBoolean();
+                pendingOfUser.compute(key, (k, pending) -> {
+                    //pending state was removed concurrently, so database is queried again
+                    if(pending == null && databaseState == null) return null;
+
+                    boolean current = pending != null ? pending.liked() : databaseState;
+                    boolean liked = newState.apply(current);
+                    result[0] = liked;
+                    result[1] = liked != current;
+                    result[2] = true;
+                    if(liked == current) return pending;
+
+                    pendingDeltas.merge(key, liked ? 1 : -1, Integer::sum);
+                    //changing pending like returns it to database state, so nothing has to be written
+                    return pending != null ? null : new PendingLike(liked, LocalDateTime.now());
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * applies pending likes of user to ids of liked posts or comments, read from database
+     * @param target kind of liked entities
+     * @param userId id of user
+     * @param likedIds liked ids from database
+     * @return liked ids with pending state
+     */
+    public Set<Long> applyPending(LikeTarget target, String userId, Set<Long> likedIds) {
+        Map<TargetKey, PendingLike> pendingOfUser = pendingLikes.get(userId);
+        if(pendingOfUser == null || pendingOfUser.isEmpty()) return likedIds;
+
+        Set<Long> result = new HashSet<>(likedIds);
+        pendingOfUser.forEach((key, pending) -> {
+            if(key.target() != target) return;
+
+            if(pending.liked()) result.add(key.targetId());
+            else result.remove(key.targetId());
+        });
+        return result;
+    }
+
+    /**
+     * applies pending likes to like counter, read from database
+     * @param target kind of liked entity
+     * @param targetId id of post or comment
+     * @param likeCount counter from database
+     * @return counter with pending likes
+     */
+    public int applyPending(LikeTarget target, Long targetId, int likeCount) {
+        if(pendingDeltas.isEmpty()) return likeCount;
+
+        return likeCount + pendingDeltas.getOrDefault(new TargetKey(target, targetId), 0);
+    }
+
+    /**
+     * writes pending likes to database. Called periodically and on shutdown
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${custom.likes.write-behind.flush-interval}")
+    public void flush() {
+        if(pendingLikes.isEmpty()) return;
+
+        lock.writeLock().lock();
+        try {
+            Map<LikeTarget, List<LikeChange>> changes = new EnumMap<>(LikeTarget.class);
+            pendingLikes.forEach((userId, pendingOfUser) -> pendingOfUser.forEach((key, pending) -> changes
+                    .computeIfAbsent(key.target(), target -> new ArrayList<>())
+                    .add(new LikeChange(userId, key.targetId(), pending.liked(), pending.likeDate()))));
+
+            //if writing fails, likes stay pending and are retried with next flush
+            for(Map.Entry<LikeTarget, List<LikeChange>> targetChanges : changes.entrySet()){
+                //ranking is changed inside of the transaction, which writes likes, so it is applied together with their commit
+                transactionTemplate.executeWithoutResult(status -> {
+                    Map<Long, Integer> deltas = likeJdbcRepository.applyLikeChanges(targetChanges.getKey(), targetChanges.getValue(),
+                            trendingScoreService::weightOf);
+                    if(targetChanges.getKey() == LikeTarget.POST) deltas.forEach(likeRankingIndex::increment);
+                });
+
+                pendingLikes.values().forEach(pendingOfUser -> pendingOfUser.keySet()
+                        .removeIf(key -> key.target() == targetChanges.getKey()));
+                pendingDeltas.keySet().removeIf(key -> key.target() == targetChanges.getKey());
+            }
+            //counters of cached pages could be read between writing of likes and clearing of pending state
+            if(changes.containsKey(LikeTarget.POST)){
+                feedCache.evictLikes(changes.get(LikeTarget.POST).stream().map(LikeChange::targetId).collect(Collectors.toSet()));
+            }
+            pendingLikes.values().removeIf(Map::isEmpty);
+        } catch (RuntimeException e) {
+            log.error("Failed to write pending likes", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.naukma.thesisbackend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naukma.thesisbackend.dtos.PostExportDto;
+import com.naukma.thesisbackend.entities.Tag;
+import com.naukma.thesisbackend.enums.LikeTarget;
+import com.naukma.thesisbackend.projections.CommentSummary;
+import com.naukma.thesisbackend.projections.PostSummary;
+import com.naukma.thesisbackend.repositories.CommentRepository;
+import com.naukma.thesisbackend.repositories.PostRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * service for exporting all posts as NDJSON, one post per line.
+ * Posts are streamed from database and written chunk by chunk, so memory usage doesn't depend on number of posts
+ */
+@Service
+public class PostExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostExportService.class);
+
+    /**
+     * number of posts, for which tags and comments are loaded in one query
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeWriteBehindBuffer likeBuffer;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public PostExportService(PostRepository postRepository,
+                             CommentRepository commentRepository,
+                             LikeWriteBehindBuffer likeBuffer,
+                             EntityManager entityManager,
+                             ObjectMapper objectMapper) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeBuffer = likeBuffer;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * writes all posts with their tags, ordered by id
+     * @param withComments true if every post has to contain all of its comments
+     * @param out stream to write posts to, it is flushed after every chunk
+     * @return number of exported posts
+     */
+    @Transactional(readOnly = true)
+    public long exportPosts(boolean withComments, OutputStream out) throws IOException {
+        long exported = 0;
+
+        try (Stream<PostSummary> posts = postRepository.streamAllPostSummaries()) {
+            Iterator<PostSummary> iterator = posts.iterator();
+            List<PostSummary> chunk = new ArrayList<>(CHUNK_SIZE);
+            while(iterator.hasNext()){
+                chunk.add(iterator.next());
+                if(chunk.size() == CHUNK_SIZE || !iterator.hasNext()){
+                    writeChunk(chunk, withComments, out);
+                    exported += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+
+        log.info("Exported {} posts", exported);
+        return exported;
+    }
+
+    private void writeChunk(List<PostSummary> posts, boolean withComments, OutputStream out) throws IOException {
+        List<Long> postIds = posts.stream().map(PostSummary::postId).toList();
+
+        Map<Long, List<Tag>> tagsByPostId = new HashMap<>();
+        for(Object[] postTag : postRepository.findTagsOfPosts(postIds)){
+            tagsByPostId.computeIfAbsent((Long) postTag[0], id -> new ArrayList<>()).add((Tag) postTag[1]);
+        }
+
+        Map<Long, List<CommentSummary>> commentsByPostId = new HashMap<>();
+        if(withComments){
+            for(CommentSummary comment : commentRepository.findCommentSummariesOfPosts(postIds)){
+                commentsByPostId.computeIfAbsent(comment.postId(), id -> new ArrayList<>()).add(comment);
+            }
+        }
+
+        for(PostSummary post : posts){
+            PostExportDto postDto = new PostExportDto(
+                    post.postId(),
+                    post.title(),
+                    post.content(),
+                    post.postedDate(),
+                    likeBuffer.applyPending(LikeTarget.POST, post.postId(), post.likeCount()),
+                    post.authorUserId(),
+                    post.authorNickname(),
+                    tagsByPostId.getOrDefault(post.postId(), List.of()),
+                    withComments ? commentsByPostId.getOrDefault(post.postId(), List.of()) : null
+            );
+            out.write(objectMapper.writeValueAsBytes(postDto));
+            out.write(LINE_SEPARATOR);
+        }
+        out.flush();
+
+        //loaded tags are not needed anymore, so persistence context doesn't grow with every chunk
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,296 @@
+package com.naukma.thesisbackend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naukma.thesisbackend.cache.FeedCache;
+import com.naukma.thesisbackend.dtos.CommentImportDto;
+import com.naukma.thesisbackend.dtos.ImportReportDto;
+import com.naukma.thesisbackend.dtos.ImportReportDto.ChunkReport;
+import com.naukma.thesisbackend.dtos.PostImportDto;
+import com.naukma.thesisbackend.entities.Comment;
+import com.naukma.thesisbackend.entities.Post;
+import com.naukma.thesisbackend.entities.Tag;
+import com.naukma.thesisbackend.entities.User;
+import com.naukma.thesisbackend.repositories.TagRepository;
+import com.naukma.thesisbackend.repositories.UserRepository;
+import com.naukma.thesisbackend.search.LikeRankingIndex;
+import com.naukma.thesisbackend.search.PostSearchIndex;
+import com.naukma.thesisbackend.search.TagBitmapIndex;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * service for bulk import of posts with comments from NDJSON, one {@link PostImportDto} per line.
+ * Lines are imported in chunks, each chunk is committed in its own transaction with batched inserts,
+ * so failure of one chunk doesn't roll back the whole import
+ */
+@Service
+public class PostImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostImportService.class);
+
+    private final EntityManager entityManager;
+    private final TagRepository tagRepository;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final PostSearchIndex postSearchIndex;
+    private final TagBitmapIndex tagBitmapIndex;
+    private final LikeRankingIndex likeRankingIndex;
+    private final FeedCache feedCache;
+
+    /**
+     * number of lines, committed in one transaction
+     */
+    @Value("${custom.import.chunk-size}")
+    private int chunkSize;
+
+    private record ParsedLine(long lineNumber, PostImportDto post) {
+    }
+
+    private record ImportedPost(Long postId, String title, String content, List<Long> tagIds, int comments) {
+    }
+
+    /**
+     * imported post with its comments, which are persisted after all posts of chunk
+     */
+    private record NewPost(Post post, List<Comment> comments) {
+    }
+
+    public PostImportService(EntityManager entityManager,
+                             TagRepository tagRepository,
+                             UserRepository userRepository,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager,
+                             PostSearchIndex postSearchIndex,
+                             TagBitmapIndex tagBitmapIndex,
+                             LikeRankingIndex likeRankingIndex,
+                             FeedCache feedCache) {
+        this.entityManager = entityManager;
+        this.tagRepository = tagRepository;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.postSearchIndex = postSearchIndex;
+        this.tagBitmapIndex = tagBitmapIndex;
+        this.likeRankingIndex = likeRankingIndex;
+        this.feedCache = feedCache;
+    }
+
+    /**
+     * imports posts from NDJSON stream. Invalid lines are skipped and reported
+     * @param in stream of posts, one JSON object per line
+     * @return numbers of imported posts and comments with report of every chunk
+     */
+    public ImportReportDto importPosts(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        List<ChunkReport> chunks = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<ParsedLine> lines = new ArrayList<>(chunkSize);
+        List<String> errors = new ArrayList<>();
+        long lineNumber = 0;
+        long fromLine = 1;
+        String line;
+        while((line = reader.readLine()) != null){
+            lineNumber++;
+            if(!line.isBlank()){
+                try {
+                    lines.add(new ParsedLine(lineNumber, objectMapper.readValue(line, PostImportDto.class)));
+                } catch (JsonProcessingException e) {
+                    errors.add("line " + lineNumber + ": invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+
+            if(lineNumber - fromLine + 1 == chunkSize){
+                chunks.add(importChunk(fromLine, lineNumber, lines, errors));
+                fromLine = lineNumber + 1;
+                lines = new ArrayList<>(chunkSize);
+                errors = new ArrayList<>();
+            }
+        }
+        if(lineNumber >= fromLine) chunks.add(importChunk(fromLine, lineNumber, lines, errors));
+
+        long posts = chunks.stream().mapToLong(ChunkReport::posts).sum();
+        long comments = chunks.stream().mapToLong(ChunkReport::comments).sum();
+        long failedLines = chunks.stream().mapToLong(ChunkReport::failedLines).sum();
+        if(posts > 0) feedCache.evictAll();
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Imported {} posts and {} comments in {} ms, {} lines failed", posts, comments, millis, failedLines);
+        return new ImportReportDto(posts, comments, failedLines, millis, chunks);
+    }
+
+    /**
+     * writes parsed lines of one chunk in a transaction and adds imported posts to in-memory indexes
+     * @param errors errors of chunk lines found before, new errors are added to them
+     */
+    private ChunkReport importChunk(long fromLine, long toLine, List<ParsedLine> lines, List<String> errors) {
+        long start = System.nanoTime();
+        int lineCount = lines.size() + errors.size();
+
+        List<ImportedPost> importedPosts = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistPosts(lines, errors, importedPosts));
+        } catch (RuntimeException e) {
+            log.warn("Import of lines {}-{} failed", fromLine, toLine, e);
+            importedPosts.clear();
+            errors.add("lines " + fromLine + "-" + toLine + " rolled back: "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+
+        postSearchIndex.indexAll(importedPosts
+                .stream()
+                .map(post -> new PostSearchIndex.IndexedPost(post.postId(), post.title(), post.content()))
+                .toList());
+        for(ImportedPost post : importedPosts){
+            tagBitmapIndex.setTags(post.postId(), post.tagIds());
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        int comments = importedPosts.stream().mapToInt(ImportedPost::comments).sum();
+        double postsPerSecond = importedPosts.size() * 1000.0 / Math.max(millis, 1);
+        return new ChunkReport(fromLine, toLine, importedPosts.size(), comments, lineCount - importedPosts.size(),
+                millis, postsPerSecond, errors);
+    }
+
+    /**
+     * persists valid posts together with their comments. Ids are allocated from sequences,
+     * so inserts are sent to database in JDBC batches. Inserts are ordered here instead of by Hibernate,
+     * which can't sort self-referencing comments: all posts are persisted before all comments,
+     * and replied comments before their replies
+     */
+    private void persistPosts(List<ParsedLine> lines, List<String> errors, List<ImportedPost> importedPosts) {
+        Set<String> userIds = new HashSet<>();
+        Set<Long> tagIds = new HashSet<>();
+        for(ParsedLine line : lines){
+            userIds.add(line.post().authorUserId());
+            commentsOf(line.post()).forEach(comment -> userIds.add(comment.authorUserId()));
+            if(line.post().tags() != null) tagIds.addAll(line.post().tags());
+        }
+        userIds.remove(null);
+        tagIds.remove(null);
+
+        Set<String> existingUserIds = userIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(userRepository.findExistingUserIds(userIds));
+        Map<Long, Tag> tagsById = tagRepository.findAllById(tagIds)
+                .stream()
+                .collect(Collectors.toMap(Tag::getTagId, Function.identity()));
+
+        List<NewPost> newPosts = new ArrayList<>();
+        for(ParsedLine line : lines){
+            String error = validate(line.post(), existingUserIds);
+            if(error != null){
+                errors.add("line " + line.lineNumber() + ": " + error);
+                continue;
+            }
+
+            NewPost newPost = toPost(line.post(), tagsById);
+            entityManager.persist(newPost.post());
+            newPosts.add(newPost);
+        }
+        entityManager.flush();
+
+        Map<String, Integer> postCounts = new HashMap<>();
+        Map<String, Integer> commentCounts = new HashMap<>();
+        for(NewPost newPost : newPosts){
+            newPost.comments().forEach(entityManager::persist);
+
+            postCounts.merge(newPost.post().getPostAuthor().getUserId(), 1, Integer::sum);
+            newPost.comments().forEach(comment -> commentCounts.merge(comment.getCommentAuthor().getUserId(), 1, Integer::sum));
+
+            Post post = newPost.post();
+            importedPosts.add(new ImportedPost(post.getPostId(), post.getTitle(), post.getContent(),
+                    post.getTags().stream().map(Tag::getTagId).toList(), newPost.comments().size()));
+            //ranking is changed together with commit of posts, as other changes of ranking
+            likeRankingIndex.add(post.getPostId());
+        }
+        postCounts.forEach(userRepository::incrementPostCount);
+        commentCounts.forEach(userRepository::incrementCommentCount);
+
+        //entity manager can be shared by all chunks of request, so it is cleared for the next chunk
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * @return description of the first problem of post, null if post is valid
+     */
+    private String validate(PostImportDto post, Set<String> existingUserIds) {
+        if(isBlank(post.title()) || isBlank(post.content())) return "title and content are required";
+        if(!existingUserIds.contains(post.authorUserId())) return "no such user " + post.authorUserId();
+
+        Set<Long> previousCommentIds = new HashSet<>();
+        for(CommentImportDto comment : commentsOf(post)){
+            if(isBlank(comment.content())) return "content of comment is required";
+            if(!existingUserIds.contains(comment.authorUserId())) return "no such user " + comment.authorUserId();
+            if(comment.replyTo() != null && !previousCommentIds.contains(comment.replyTo())){
+                return "comment " + comment.commentId() + " replies to unknown comment " + comment.replyTo();
+            }
+            if(comment.commentId() != null) previousCommentIds.add(comment.commentId());
+        }
+        return null;
+    }
+
+    private NewPost toPost(PostImportDto postDto, Map<Long, Tag> tagsById) {
+        Post post = new Post();
+        post.setTitle(postDto.title());
+        post.setContent(postDto.content());
+        post.setPostedDate(postDto.postedDate());
+        post.setPostAuthor(entityManager.getReference(User.class, postDto.authorUserId()));
+        if(postDto.tags() != null){
+            post.setTags(postDto.tags()
+                    .stream()
+                    .distinct()
+                    .map(tagsById::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toCollection(ArrayList::new)));
+        }
+
+        List<Comment> comments = new ArrayList<>();
+        Map<Long, Comment> commentsByImportedId = new HashMap<>();
+        for(CommentImportDto commentDto : commentsOf(postDto)){
+            Comment comment = new Comment();
+            comment.setPost(post);
+            comment.setContent(commentDto.content());
+            comment.setCommentedDate(commentDto.commentedDate());
+            comment.setCommentAuthor(entityManager.getReference(User.class, commentDto.authorUserId()));
+            if(commentDto.replyTo() != null) comment.setReplyTo(commentsByImportedId.get(commentDto.replyTo()));
+            if(commentDto.commentId() != null) commentsByImportedId.put(commentDto.commentId(), comment);
+
+            comments.add(comment);
+        }
+        return new NewPost(post, comments);
+    }
+
+    private static Collection<CommentImportDto> commentsOf(PostImportDto post) {
+        return post.comments() != null ? post.comments() : List.of();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
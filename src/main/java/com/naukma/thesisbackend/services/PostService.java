@@ -1,25 +1,39 @@
 package com.naukma.thesisbackend.services;
 
+import com.naukma.thesisbackend.cache.FeedCache;
+import com.naukma.thesisbackend.cache.FeedCacheKey;
 import com.naukma.thesisbackend.dtos.CommentDto;
+import com.naukma.thesisbackend.dtos.CursorPageDto;
 import com.naukma.thesisbackend.dtos.PostDto;
 import com.naukma.thesisbackend.dtos.PostRequestDto;
-import com.naukma.thesisbackend.entities.Comment;
 import com.naukma.thesisbackend.entities.Post;
-import com.naukma.thesisbackend.entities.PostLike;
+import com.naukma.thesisbackend.entities.Tag;
 import com.naukma.thesisbackend.entities.User;
-import com.naukma.thesisbackend.entities.keys.PostLikeKey;
+import com.naukma.thesisbackend.enums.LikeTarget;
+import com.naukma.thesisbackend.exceptions.AuthenticationFailedException;
 import com.naukma.thesisbackend.exceptions.ForbiddenException;
+import com.naukma.thesisbackend.pagination.KeysetCursor;
+import com.naukma.thesisbackend.projections.PostSummary;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository;
 import com.naukma.thesisbackend.repositories.PostLikeRepository;
 import com.naukma.thesisbackend.repositories.PostRepository;
 import com.naukma.thesisbackend.repositories.TagRepository;
 import com.naukma.thesisbackend.repositories.UserRepository;
+import com.naukma.thesisbackend.search.LikeRankingIndex;
+import com.naukma.thesisbackend.search.PostSearchIndex;
+import com.naukma.thesisbackend.search.TagBitmapIndex;
+import com.naukma.thesisbackend.search.UserSearchIndex;
 import jakarta.persistence.EntityNotFoundException;
 import org.jetbrains.annotations.Nullable;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -30,19 +44,65 @@ public class PostService {
 
     private final PostRepository postRepository;
     private final PostLikeRepository postLikeRepository;
+    private final LikeJdbcRepository likeJdbcRepository;
     private final TagRepository tagRepository;
+    private final UserRepository userRepository;
     private final CommentService commentService;
+    private final PostSearchIndex postSearchIndex;
+    private final UserSearchIndex userSearchIndex;
+    private final TagBitmapIndex tagBitmapIndex;
+    private final FeedCache feedCache;
+    private final LikeWriteBehindBuffer likeBuffer;
+    private final LikeRankingIndex likeRankingIndex;
+    private final TrendingScoreService trendingScoreService;
+
+    /**
+     * maximal number of ids of posts or authors, passed into feed query. Larger filters are applied by database
+     */
+    @Value("${custom.feed-filters.max-candidate-ids}")
+    private int maxCandidateIds;
+
+    /**
+     * posts, matching filters which are served by indexes outside of database
+     * @param postIds ids of candidate posts, or null if posts are not limited by ids
+     * @param tagIds tags, which are filtered by database since too many posts have them, or null
+     * @param tagMatchCount number of given tags, which post must have, when tags are filtered by database
+     */
+    private record PostCandidates(@Nullable Set<Long> postIds, @Nullable Collection<Long> tagIds, long tagMatchCount) {
+
+        boolean isEmpty() {
+            return postIds != null && postIds.isEmpty();
+        }
+    }
 
     public PostService(
             PostRepository postRepository,
             PostLikeRepository postLikeRepository,
+            LikeJdbcRepository likeJdbcRepository,
             TagRepository tagRepository,
-            CommentService commentService
+            UserRepository userRepository,
+            CommentService commentService,
+            PostSearchIndex postSearchIndex,
+            UserSearchIndex userSearchIndex,
+            TagBitmapIndex tagBitmapIndex,
+            FeedCache feedCache,
+            LikeWriteBehindBuffer likeBuffer,
+            LikeRankingIndex likeRankingIndex,
+            TrendingScoreService trendingScoreService
     ){
         this.postRepository = postRepository;
         this.postLikeRepository = postLikeRepository;
+        this.likeJdbcRepository = likeJdbcRepository;
         this.tagRepository = tagRepository;
+        this.userRepository = userRepository;
         this.commentService = commentService;
+        this.postSearchIndex = postSearchIndex;
+        this.userSearchIndex = userSearchIndex;
+        this.tagBitmapIndex = tagBitmapIndex;
+        this.feedCache = feedCache;
+        this.likeBuffer = likeBuffer;
+        this.likeRankingIndex = likeRankingIndex;
+        this.trendingScoreService = trendingScoreService;
     }
 
     /**
@@ -53,47 +113,104 @@ public class PostService {
      * @return {@link PostDto PostDto} object
      */
     public PostDto postToPostDto(Post post, @Nullable String userId, boolean comments){
+        boolean isLiked = getLikedPostIds(userId, List.of(post.getPostId())).contains(post.getPostId());
+
+        return postToPostDto(post, isLiked, comments?commentService.getPostCommentTree(post.getPostId(), userId):null, null);
+    }
 
-        boolean isLiked = userId != null
-                && !userId.isEmpty() && (post
-                .getPostLikes()
+    /**
+     * method for mapping list of {@link Post Post} into list of {@link PostDto PostDto} objects without comments.
+     * Likes of user for all posts are retrieved in one query
+     * @param posts post objects
+     * @param userId id of user, for personalized response
+     * @return list of {@link PostDto PostDto} objects in the same order
+     */
+    public List<PostDto> postsToPostDtos(List<Post> posts, @Nullable String userId){
+        Set<Long> likedPostIds = getLikedPostIds(userId, posts.stream().map(Post::getPostId).toList());
+
+        return posts
                 .stream()
-                .anyMatch(like -> Objects.equals(like.getUser().getUserId(), userId)));
+                .map(post -> postToPostDto(post, likedPostIds.contains(post.getPostId()), null, null))
+                .toList();
+    }
+
+    /**
+     * method for mapping list of {@link PostSummary PostSummary} projections into list of {@link PostDto PostDto} objects.
+     * Tags and likes of user for all posts are retrieved in one query each, without loading post entities
+     * @param posts post projections
+     * @param userId id of user, for personalized response
+     * @return list of {@link PostDto PostDto} objects in the same order
+     */
+    public List<PostDto> summariesToPostDtos(List<PostSummary> posts, @Nullable String userId){
+        if(posts.isEmpty()) return List.of();
+
+        List<Long> postIds = posts.stream().map(PostSummary::postId).toList();
+        Set<Long> likedPostIds = getLikedPostIds(userId, postIds);
 
+        Map<Long, List<Tag>> tagsByPostId = new HashMap<>();
+        for(Object[] postTag : postRepository.findTagsOfPosts(postIds)){
+            tagsByPostId.computeIfAbsent((Long) postTag[0], id -> new ArrayList<>()).add((Tag) postTag[1]);
+        }
+
+        return posts
+                .stream()
+                .map(post -> new PostDto(
+                        post.postId(),
+                        post.title(),
+                        post.content(),
+                        post.postedDate(),
+                        likeBuffer.applyPending(LikeTarget.POST, post.postId(), post.likeCount()),
+                        null,
+                        null,
+                        likedPostIds.contains(post.postId()),
+                        post.authorUserId(),
+                        post.authorNickname(),
+                        tagsByPostId.getOrDefault(post.postId(), List.of())))
+                .toList();
+    }
+
+    private PostDto postToPostDto(Post post, boolean isLiked, @Nullable List<CommentDto> comments, @Nullable String commentsCursor){
+        return postToPostDto(post, post.getPostAuthor().getNickname(), isLiked, comments, commentsCursor);
+    }
+
+    private PostDto postToPostDto(Post post, String authorNickname, boolean isLiked, @Nullable List<CommentDto> comments, @Nullable String commentsCursor){
         return new PostDto(
                 post.getPostId(),
                 post.getTitle(),
                 post.getContent(),
                 post.getPostedDate(),
-                post.getPostLikes().size(),
-                comments?getPostCommentTree(post, userId):null,
+                likeBuffer.applyPending(LikeTarget.POST, post.getPostId(), post.getLikeCount()),
+                comments,
+                commentsCursor,
                 isLiked,
                 post.getPostAuthor().getUserId(),
-                post.getPostAuthor().getNickname(),
+                authorNickname,
                 post.getTags());
     }
 
+    /**
+     * finds which of specified posts are liked by user
+     * @param userId id of current user, can be null
+     * @param postIds ids of posts to check
+     * @return ids of liked posts, empty set if user is not authenticated
+     */
+    private Set<Long> getLikedPostIds(@Nullable String userId, Collection<Long> postIds){
+        if(userId == null || userId.isEmpty() || postIds.isEmpty()) return Set.of();
 
-    private List<CommentDto> getPostCommentTree(Post post, @Nullable String userId){
-        return post
-                .getComments()
-                .stream()
-                .filter(comment -> comment.getReplyTo()==null)
-                .sorted(Comparator.comparing(Comment::getCommentedDate).reversed())
-                .map(comment -> commentService.commentToCommentDto(comment, userId))
-                .toList();
+        return likeBuffer.applyPending(LikeTarget.POST, userId, postLikeRepository.findLikedPostIds(userId, postIds));
     }
 
+
     /**
-     * method for converting post comments into {@link Set<CommentDto>} list for returning as response
+     * method for converting post comments into {@link List<CommentDto>} tree for returning as response
      * @param postId post id
      * @param userId id of current user
      * @return {@link List<CommentDto>} list
      */
     public List<CommentDto> getPostCommentTree(Long postId, @Nullable String userId){
-        Post post = postRepository.findPostByPostId(postId).orElseThrow(()-> new EntityNotFoundException("No such post"));
+        if(!postRepository.existsById(postId)) throw new EntityNotFoundException("No such post");
 
-        return getPostCommentTree(post, userId);
+        return commentService.getPostCommentTree(postId, userId);
     }
 
     /**
@@ -108,15 +225,52 @@ public class PostService {
         return postToPostDto(post, userId, comments);
     }
 
+    /**
+     * method for getting one post together with the first page of its comment threads
+     * @param postId id of queried post
+     * @param userId id of current user
+     * @param commentsSize number of top-level comments to include
+     * @param commentDepth number of reply levels to include
+     * @param repliesSize maximal number of replies included for every comment
+     * @return {@link PostDto PostDto} object with cursor of the next page of comments
+     */
+    public PostDto getPostDto(Long postId, String userId, int commentsSize, int commentDepth, int repliesSize){
+        Post post = postRepository.findPostByPostId(postId)
+                .orElseThrow(() -> new EntityNotFoundException("no post with this id"));
+
+        boolean isLiked = getLikedPostIds(userId, List.of(postId)).contains(postId);
+        CursorPageDto<CommentDto> commentThreads = commentService
+                .getPostCommentThreads(postId, null, commentsSize, commentDepth, repliesSize, userId);
+
+        return postToPostDto(post, isLiked, commentThreads.content(), commentThreads.nextCursor());
+    }
+
+    /**
+     * method for getting page of comment threads of post
+     * @param postId id of post
+     * @param cursor cursor of page, null for the first page
+     * @param size number of top-level comments in page
+     * @param depth number of reply levels to include
+     * @param repliesSize maximal number of replies included for every comment
+     * @param userId id of current user
+     * @return page of comment threads
+     */
+    public CursorPageDto<CommentDto> getPostCommentThreads(Long postId, @Nullable String cursor, int size, int depth, int repliesSize, @Nullable String userId){
+        if(!postRepository.existsById(postId)) throw new EntityNotFoundException("No such post");
+
+        return commentService.getPostCommentThreads(postId, cursor, size, depth, repliesSize, userId);
+    }
+
     /**
      * versatile method for querying posts by several parameters
      *
      * @param authorId id of post author
      * @param tagIds tags of post
+     * @param tagMode "ANY" to query posts with at least one of given tags, "ALL" to query posts with all of them
      * @param minDate minimal date of post creation
      * @param maxDate minimal date of post creation
      * @param title title of post
-     * @param sortBy column by which posts will be sorted, for example "
+     * @param sortBy column by which posts will be sorted, for example "postedDate", "likes" or "trending"
      * @param sortDirection direction of sorting, can be "ASC" or "DESC"
      * @param page number of queried page
      * @param size size of page
@@ -125,6 +279,7 @@ public class PostService {
      */
     public Page<PostDto> getFilteredPosts(String authorId,
                                           @Nullable List<Long> tagIds,
+                                          @Nullable String tagMode,
                                           @Nullable LocalDateTime minDate,
                                           @Nullable LocalDateTime maxDate,
                                           @Nullable String title,
@@ -134,42 +289,301 @@ public class PostService {
                                           Integer size,
                                           @Nullable String userId
     ) {
-        //Setting up sorting and pagination
-        Pageable pageable;
+        //Setting up sorting and pagination, likes and trending are sorted by precomputed columns
+        Sort.Direction direction = (sortDirection == null || sortDirection.equalsIgnoreCase("DESC")) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        String sortProperty = (sortBy == null) ? "postedDate" : switch (sortBy) {
+            case "likes" -> "likeCount";
+            case "trending" -> "trendingScore";
+            default -> sortBy;
+        };
+        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortProperty, "postId"));
 
-        if(!Objects.equals(sortBy, "likes")) {
-            Sort.Order sortOrder = new Sort.Order(
-                    (sortDirection == null || sortDirection.equalsIgnoreCase("DESC")) ? Sort.Direction.DESC : Sort.Direction.ASC,
-                    (sortBy == null) ? "postedDate" : sortBy);
-            pageable = PageRequest.of(page, size, Sort.by(sortOrder));
+        //pages for anonymous users are the same for everyone, so they are shared through cache
+        if(userId == null){
+            FeedCacheKey key = FeedCacheKey.of(authorId, tagIds, tagMode, minDate, maxDate, title,
+                    sortProperty, direction.isAscending(), page, size);
+            return feedCache.get(key, () -> findFilteredPosts(authorId, tagIds, tagMode, minDate, maxDate, title, pageable, null));
+        }
+        return findFilteredPosts(authorId, tagIds, tagMode, minDate, maxDate, title, pageable, userId);
+    }
 
-            return postRepository
-                    .findFilteredPosts(authorId, tagIds, minDate, maxDate, title, pageable)
-                    .map(post -> postToPostDto(post, userId, false));
+    private Page<PostDto> findFilteredPosts(@Nullable String authorId,
+                                            @Nullable List<Long> tagIds,
+                                            @Nullable String tagMode,
+                                            @Nullable LocalDateTime minDate,
+                                            @Nullable LocalDateTime maxDate,
+                                            @Nullable String title,
+                                            Pageable pageable,
+                                            @Nullable String userId
+    ) {
+        //top pages of all posts by likes are read from in-memory ranking instead of sorting in database
+        Sort.Order likesOrder = pageable.getSort().getOrderFor("likeCount");
+        boolean filtered = authorId != null || (tagIds != null && !tagIds.isEmpty())
+                || minDate != null || maxDate != null || (title != null && !title.isBlank());
+        if(likesOrder != null && !filtered && pageable.getOffset() <= LikeRankingIndex.MAX_RANKED_OFFSET){
+            List<Long> postIds = likeRankingIndex.findPostIds(likesOrder.isAscending(), (int) pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(summariesToPostDtos(findPostSummariesInOrder(postIds), userId), pageable, likeRankingIndex.size());
         }
-        else {
-            pageable = PageRequest.of(page, size);
-            return postRepository
-                    .findFilteredPostsSortByLikes(authorId, tagIds, minDate, maxDate, title, pageable)
-                    .map(objectList -> postToPostDto((Post)objectList[0], userId, false));
+
+        Set<String> candidateAuthorIds = findCandidateAuthorIds(authorId);
+        PostCandidates candidates = findCandidatePosts(title, tagIds, tagMode);
+        if(isEmpty(candidateAuthorIds) || candidates.isEmpty()) return Page.empty(pageable);
+
+        //author filter, which matches too many users, is applied by database
+        String authorSubstring = candidateAuthorIds == null ? authorId : null;
+        Page<PostSummary> posts = postRepository.findFilteredPostSummaries(candidateAuthorIds, authorSubstring, title, minDate, maxDate,
+                candidates.postIds(), candidates.tagIds(), candidates.tagMatchCount(), pageable);
+
+        return new PageImpl<>(summariesToPostDtos(posts.getContent(), userId), pageable, posts.getTotalElements());
+    }
+
+
+    /**
+     * method for querying posts by several parameters with keyset (cursor) pagination.
+     * Posts are always sorted by date of creation, with post id as tie-breaker.
+     * Unlike {@link #getFilteredPosts}, it doesn't count total number of posts and doesn't skip rows of previous pages
+     *
+     * @param authorId id of post author
+     * @param tagIds tags of post
+     * @param tagMode "ANY" to query posts with at least one of given tags, "ALL" to query posts with all of them
+     * @param minDate minimal date of post creation
+     * @param maxDate minimal date of post creation
+     * @param title title of post
+     * @param sortDirection direction of sorting, can be "ASC" or "DESC"
+     * @param cursor cursor returned with previous page, null for first page
+     * @param size size of page
+     * @param userId id of current user (for personalizing queried posts)
+     * @return page of posts with cursor of the next page
+     */
+    public CursorPageDto<PostDto> getPostFeed(@Nullable String authorId,
+                                              @Nullable List<Long> tagIds,
+                                              @Nullable String tagMode,
+                                              @Nullable LocalDateTime minDate,
+                                              @Nullable LocalDateTime maxDate,
+                                              @Nullable String title,
+                                              @Nullable String sortDirection,
+                                              @Nullable String cursor,
+                                              Integer size,
+                                              @Nullable String userId
+    ) {
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+        LocalDateTime cursorDate = keysetCursor != null ? keysetCursor.date() : null;
+        Long cursorId = keysetCursor != null ? keysetCursor.id() : null;
+
+        Set<String> candidateAuthorIds = findCandidateAuthorIds(authorId);
+        PostCandidates candidates = findCandidatePosts(title, tagIds, tagMode);
+        if(isEmpty(candidateAuthorIds) || candidates.isEmpty()) return new CursorPageDto<>(List.of(), null);
+
+        //one extra post is queried to find out if there is next page
+        Pageable limit = PageRequest.of(0, size + 1);
+        String authorSubstring = candidateAuthorIds == null ? authorId : null;
+
+        List<PostSummary> posts = (sortDirection != null && sortDirection.equalsIgnoreCase("ASC"))
+                ? postRepository.findFilteredPostSummariesAfter(candidateAuthorIds, authorSubstring, title, minDate, maxDate,
+                        candidates.postIds(), candidates.tagIds(), candidates.tagMatchCount(), cursorDate, cursorId, limit)
+                : postRepository.findFilteredPostSummariesBefore(candidateAuthorIds, authorSubstring, title, minDate, maxDate,
+                        candidates.postIds(), candidates.tagIds(), candidates.tagMatchCount(), cursorDate, cursorId, limit);
+
+        String nextCursor = null;
+        if(posts.size() > size){
+            posts = posts.subList(0, size);
+            PostSummary last = posts.get(size - 1);
+            nextCursor = new KeysetCursor(last.postedDate(), last.postId()).encode();
         }
+
+        return new CursorPageDto<>(summariesToPostDtos(posts, userId), nextCursor);
     }
 
+    /**
+     * retrieves posts of author with keyset pagination, newest first
+     * @param authorId id of author
+     * @param cursor value of nextCursor from previous page, null for the first page
+     * @param size size of page
+     * @param userId id of current user (for personalizing queried posts)
+     * @return page of posts with cursor of the next page
+     */
+    public CursorPageDto<PostDto> getPostsAuthoredBy(String authorId, @Nullable String cursor, Integer size, @Nullable String userId){
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+
+        //one extra post is queried to find out if there is next page
+        List<PostSummary> posts = postRepository.findAuthorPostSummariesBefore(authorId,
+                keysetCursor != null ? keysetCursor.date() : null,
+                keysetCursor != null ? keysetCursor.id() : null,
+                PageRequest.of(0, size + 1));
+
+        String nextCursor = null;
+        if(posts.size() > size){
+            posts = posts.subList(0, size);
+            PostSummary last = posts.get(size - 1);
+            nextCursor = new KeysetCursor(last.postedDate(), last.postId()).encode();
+        }
+
+        return new CursorPageDto<>(summariesToPostDtos(posts, userId), nextCursor);
+    }
+
+    /**
+     * retrieves ids of posts of author with keyset pagination, newest first
+     * @param authorId id of author
+     * @param cursor value of nextCursor from previous page, null for the first page
+     * @param size size of page
+     * @return page of post ids with cursor of the next page
+     */
+    public CursorPageDto<Long> getPostIdsAuthoredBy(String authorId, @Nullable String cursor, Integer size){
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+
+        List<Object[]> posts = postRepository.findAuthorPostIdsBefore(authorId,
+                keysetCursor != null ? keysetCursor.date() : null,
+                keysetCursor != null ? keysetCursor.id() : null,
+                PageRequest.of(0, size + 1));
+
+        String nextCursor = null;
+        if(posts.size() > size){
+            posts = posts.subList(0, size);
+            Object[] last = posts.get(size - 1);
+            nextCursor = new KeysetCursor((LocalDateTime) last[1], (Long) last[0]).encode();
+        }
+
+        return new CursorPageDto<>(posts.stream().map(post -> (Long) post[0]).toList(), nextCursor);
+    }
+
+    /**
+     * retrieves posts liked by user with keyset pagination, the most recently liked first
+     * @param userId id of user
+     * @param cursor value of nextCursor from previous page, null for the first page
+     * @param size size of page
+     * @return page of posts with cursor of the next page
+     */
+    public CursorPageDto<PostDto> getLikedPosts(String userId, @Nullable String cursor, Integer size){
+        KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+
+        List<Object[]> likes = postLikeRepository.findLikedPostIdsBefore(userId,
+                keysetCursor != null ? keysetCursor.date() : null,
+                keysetCursor != null ? keysetCursor.id() : null,
+                PageRequest.of(0, size + 1));
+
+        String nextCursor = null;
+        if(likes.size() > size){
+            likes = likes.subList(0, size);
+            Object[] last = likes.get(size - 1);
+            nextCursor = new KeysetCursor((LocalDateTime) last[1], (Long) last[0]).encode();
+        }
+
+        List<Long> postIds = likes.stream().map(like -> (Long) like[0]).toList();
+        return new CursorPageDto<>(summariesToPostDtos(findPostSummariesInOrder(postIds), userId), nextCursor);
+    }
+
+    /**
+     * ranked full-text search of posts by title and content
+     * @param query searched words, all of them must be present in post
+     * @param page number of queried page
+     * @param size size of page
+     * @param userId id of current user (for personalizing queried posts)
+     * @return page of posts, from the most relevant one
+     */
+    public Page<PostDto> searchPosts(String query, Integer page, Integer size, @Nullable String userId){
+        Pageable pageable = PageRequest.of(page, size);
+
+        PostSearchIndex.SearchResult searchResult = postSearchIndex.search(query, (page + 1L) * size);
+        List<Long> pagePostIds = searchResult.postIds().stream().skip(pageable.getOffset()).toList();
+        if(pagePostIds.isEmpty()) return new PageImpl<>(List.of(), pageable, searchResult.totalMatches());
+
+        List<PostSummary> rankedPosts = findPostSummariesInOrder(pagePostIds);
+
+        return new PageImpl<>(summariesToPostDtos(rankedPosts, userId), pageable, searchResult.totalMatches());
+    }
+
+    /**
+     * retrieves posts with specified ids in one query, keeping order of ids
+     * @param postIds ids of posts
+     * @return found posts in order of ids, without posts which no longer exist
+     */
+    private List<PostSummary> findPostSummariesInOrder(List<Long> postIds){
+        if(postIds.isEmpty()) return List.of();
+
+        Map<Long, PostSummary> postsById = new HashMap<>();
+        postRepository.findPostSummariesByIds(postIds).forEach(post -> postsById.put(post.postId(), post));
+
+        return postIds
+                .stream()
+                .map(postsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * resolves filters, which are served by indexes outside of database, into candidate posts.
+     * Filters are intersected in memory, and ids are passed into query only if there are not too many of them,
+     * otherwise tags are filtered by database. Candidates of title filter may not contain title,
+     * so it is checked by database too
+     * @param title part of post title
+     * @param tagIds tags of post
+     * @param tagMode "ANY" or "ALL", how given tags are combined
+     * @return posts, which may match all such filters
+     */
+    private PostCandidates findCandidatePosts(@Nullable String title, @Nullable List<Long> tagIds, @Nullable String tagMode){
+        Set<Long> byTitle = (title == null || title.isBlank()) ? null : postSearchIndex.findTitleCandidates(title);
+        if(tagIds == null || tagIds.isEmpty()) return new PostCandidates(byTitle, null, 0);
+
+        boolean matchAll = "ALL".equalsIgnoreCase(tagMode);
+        Roaring64NavigableMap byTags = tagBitmapIndex.findPostIds(tagIds, matchAll);
+        if(byTitle != null){
+            Set<Long> candidates = new HashSet<>(byTitle);
+            candidates.removeIf(postId -> !byTags.contains(postId));
+            return new PostCandidates(candidates, null, 0);
+        }
+
+        if(byTags.getLongCardinality() > maxCandidateIds){
+            Set<Long> distinctTagIds = new HashSet<>(tagIds);
+            return new PostCandidates(null, distinctTagIds, matchAll ? distinctTagIds.size() : 1);
+        }
+        Set<Long> candidates = new HashSet<>();
+        byTags.forEach(candidates::add);
+        return new PostCandidates(candidates, null, 0);
+    }
+
+    /**
+     * resolves part of author id into set of matching users, using in-memory index instead of scanning users table
+     * @param authorId part of author id
+     * @return ids of matching users, or null if filter is not specified or too many users match it,
+     * so it should be applied by database
+     */
+    private @Nullable Set<String> findCandidateAuthorIds(@Nullable String authorId){
+        if(authorId == null) return null;
+
+        Set<String> authorIds = userSearchIndex.findUserIdsContaining(authorId);
+        return authorIds.size() <= maxCandidateIds ? authorIds : null;
+    }
+
+    private static boolean isEmpty(@Nullable Set<?> candidates){
+        return candidates != null && candidates.isEmpty();
+    }
 
     /**
      * creating post of user
-     * @param author author of post
+     * @param author author of post, can be unloaded reference
+     * @param authorNickname nickname of author, so reference to author is not loaded for response
      * @param postRequestDto post request
      * @return created post as {@link PostDto} object
      */
-    public PostDto createPost(User author, PostRequestDto postRequestDto) {
+    @Transactional
+    public PostDto createPost(User author, String authorNickname, PostRequestDto postRequestDto) {
         Post post = new Post();
         post.setPostAuthor(author);
         post.setTitle(postRequestDto.title());
         post.setContent(postRequestDto.content());
         post.setTags(new ArrayList<>(tagRepository.findAllById(postRequestDto.tags())));
 
-        return postToPostDto(postRepository.save(post), author.getUserId(), false);
+        //counter of author is updated first, it also checks that author was not deleted after token was issued
+        if(userRepository.incrementPostCount(author.getUserId(), 1) == 0)
+            throw new AuthenticationFailedException("User no longer exists");
+        Post savedPost = postRepository.save(post);
+        postSearchIndex.index(savedPost.getPostId(), savedPost.getTitle(), savedPost.getContent());
+        tagBitmapIndex.setTags(savedPost.getPostId(), savedPost.getTags().stream().map(Tag::getTagId).toList());
+        feedCache.evictPost(savedPost);
+        likeRankingIndex.add(savedPost.getPostId());
+
+        //newly created post can't be liked yet
+        return postToPostDto(savedPost, authorNickname, false, null, null);
     }
 
     /**
@@ -186,12 +600,20 @@ public class PostService {
         if(!Objects.equals(post.getPostAuthor().getUserId(), userId)){
             throw new ForbiddenException("Requested post doesn't belong to authenticated user");
         }
+        List<Long> previousTagIds = post.getTags().stream().map(Tag::getTagId).toList();
 
         post.setTitle(postRequestDto.title());
         post.setContent(postRequestDto.content());
         post.setTags(new ArrayList<>(tagRepository.findAllById(postRequestDto.tags())));
 
-        return postToPostDto(postRepository.save(post), userId, false);
+        Post savedPost = postRepository.save(post);
+        postSearchIndex.index(savedPost.getPostId(), savedPost.getTitle(), savedPost.getContent());
+        tagBitmapIndex.setTags(savedPost.getPostId(), savedPost.getTags().stream().map(Tag::getTagId).toList());
+        //pages matching previous tags of post are evicted too, since post may leave them
+        feedCache.evictPost(userId, previousTagIds, savedPost.getPostedDate());
+        feedCache.evictPost(savedPost);
+
+        return postToPostDto(savedPost, userId, false);
     }
 
     /**
@@ -199,6 +621,7 @@ public class PostService {
      * @param userId id of user
      * @param postId id of post
      */
+    @Transactional
     public void deletePost(String userId, Long postId) {
         Post post = postRepository.findPostByPostId(postId)
                 .orElseThrow(()->new EntityNotFoundException("Post with this ID not found"));
@@ -206,35 +629,86 @@ public class PostService {
         if(!Objects.equals(post.getPostAuthor().getUserId(), userId)){
             throw new ForbiddenException("Requested post doesn't belong to authenticated user");
         }
+        List<Long> tagIds = post.getTags().stream().map(Tag::getTagId).toList();
 
+        //comments and likes of post are deleted in cascade, so counters of their users are changed before
+        userRepository.decrementCommentCountsOfPost(postId);
+        userRepository.incrementPostCount(userId, -1);
+        userRepository.incrementLikesReceivedOfPostAuthor(postId, -post.getLikeCount());
         postRepository
                 .delete(post);
+        postSearchIndex.delete(postId);
+        tagBitmapIndex.removePost(postId);
+        likeRankingIndex.remove(postId);
+        feedCache.evictPost(userId, tagIds, post.getPostedDate());
     }
 
     /**
      * method for setting/removing like under the post
-     * @param user current user id, needed for checking if post belongs to current user
+     * @param userId id of current user
      * @param postId id of post
      * @return true if post is now liked, false otherwise
      */
-    public boolean toggleLike(User user, Long postId){
-        Post post = postRepository
-                .findPostByPostId(postId)
-                .orElseThrow(() -> new EntityNotFoundException("No such post"));
+    @Transactional
+    public boolean toggleLike(String userId, Long postId){
+        if(likeBuffer.isEnabled()){
+            if(!postRepository.existsById(postId)) throw new EntityNotFoundException("No such post");
 
-        Optional<PostLike> postLike = postLikeRepository.
-                findByUserAndPost(user, post);
+            boolean isLiked = likeBuffer.toggle(LikeTarget.POST, userId, postId,
+                    () -> likeJdbcRepository.existsLike(LikeTarget.POST, userId, postId));
+            feedCache.evictLikes(Set.of(postId));
+            return isLiked;
+        }
 
-        if(postLike.isPresent()){
-            postLikeRepository.delete(postLike.get());
+        LocalDateTime likeDate = likeJdbcRepository.deleteDatedLike(LikeTarget.POST, userId, postId);
+        if(likeDate != null){
+            postRepository.incrementLikeCount(postId, -1, -trendingScoreService.weightOf(likeDate));
+            userRepository.incrementLikesReceivedOfPostAuthor(postId, -1);
+            likeRankingIndex.increment(postId, -1);
+            feedCache.evictLikes(Set.of(postId));
             return false;
         }
+        return setLike(userId, postId, true);
+    }
+
+    /**
+     * idempotent method for setting or removing like under the post.
+     * Like is written with single conditional statement, without loading the post
+     * @param userId id of current user
+     * @param postId id of post
+     * @param liked true to set like, false to remove it
+     * @return true if post is now liked, false otherwise
+     */
+    @Transactional
+    public boolean setLike(String userId, Long postId, boolean liked){
+        boolean changed;
+        if(likeBuffer.isEnabled()){
+            if(!postRepository.existsById(postId)) throw new EntityNotFoundException("No such post");
+
+            changed = likeBuffer.set(LikeTarget.POST, userId, postId, liked,
+                    () -> likeJdbcRepository.existsLike(LikeTarget.POST, userId, postId));
+        }
         else{
-            PostLike newPostLike = new PostLike(user, post);
-            newPostLike.setId(new PostLikeKey());
-            postLikeRepository.save(newPostLike);
-            return true;
+            //removed like subtracts its weight, which decayed since it was set
+            double scoreDelta = 1;
+            if(liked) changed = likeJdbcRepository.insertLike(LikeTarget.POST, userId, postId);
+            else{
+                LocalDateTime likeDate = likeJdbcRepository.deleteDatedLike(LikeTarget.POST, userId, postId);
+                changed = likeDate != null;
+                if(changed) scoreDelta = -trendingScoreService.weightOf(likeDate);
+            }
+
+            if(changed){
+                postRepository.incrementLikeCount(postId, liked ? 1 : -1, scoreDelta);
+                userRepository.incrementLikesReceivedOfPostAuthor(postId, liked ? 1 : -1);
+                likeRankingIndex.increment(postId, liked ? 1 : -1);
+            }
+            //nothing was written either because like is already in requested state, or because there is no such post
+            else if(!postRepository.existsById(postId)) throw new EntityNotFoundException("No such post");
         }
+
+        if(changed) feedCache.evictLikes(Set.of(postId));
+        return liked;
     }
 
     /**
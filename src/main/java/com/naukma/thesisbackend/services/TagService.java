@@ -1,8 +1,10 @@
 package com.naukma.thesisbackend.services;
 
+import com.naukma.thesisbackend.cache.FeedCache;
 import com.naukma.thesisbackend.entities.Tag;
 import com.naukma.thesisbackend.exceptions.EntityAlreadyExistsException;
 import com.naukma.thesisbackend.repositories.TagRepository;
+import com.naukma.thesisbackend.search.TagBitmapIndex;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.stereotype.Service;
 
@@ -14,9 +16,13 @@ import java.util.Optional;
 public class TagService {
 
     private final TagRepository tagRepository;
+    private final TagBitmapIndex tagBitmapIndex;
+    private final FeedCache feedCache;
 
-    public TagService(TagRepository tagRepository) {
+    public TagService(TagRepository tagRepository, TagBitmapIndex tagBitmapIndex, FeedCache feedCache) {
         this.tagRepository = tagRepository;
+        this.tagBitmapIndex = tagBitmapIndex;
+        this.feedCache = feedCache;
     }
 
     public List<Tag> getAllTags(){
@@ -45,10 +51,15 @@ public class TagService {
                 .orElseThrow(() -> new EntityNotFoundException("No such tag"));
 
         tag.setName(newTagName);
-        return tagRepository.save(tag);
+        Tag savedTag = tagRepository.save(tag);
+        //cached pages contain tag names
+        feedCache.evictAll();
+        return savedTag;
     }
 
     public void delete(Long tagId){
         tagRepository.deleteById(tagId);
+        tagBitmapIndex.removeTag(tagId);
+        feedCache.evictAll();
     }
 }
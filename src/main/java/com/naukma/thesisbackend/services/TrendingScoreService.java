@@ -0,0 +1,73 @@
+package com.naukma.thesisbackend.services;
+
+import com.naukma.thesisbackend.cache.FeedCache;
+import com.naukma.thesisbackend.repositories.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * background job which decays trending scores of posts.
+ * Every like adds 1 to score of post, and periodic decay halves its weight every half-life,
+ * so score is the sum of likes weighted by their recency. Removed like subtracts its current weight
+ */
+@Service
+public class TrendingScoreService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingScoreService.class);
+
+    /**
+     * scores below this value are considered zero
+     */
+    private static final double SCORE_THRESHOLD = 0.01;
+
+    private final PostRepository postRepository;
+    private final FeedCache feedCache;
+
+    /**
+     * time in which weight of like is halved
+     */
+    @Value("${custom.trending.half-life-hours}")
+    private double halfLifeHours;
+
+    @Value("${custom.trending.decay-interval-minutes}")
+    private double decayIntervalMinutes;
+
+    public TrendingScoreService(PostRepository postRepository, FeedCache feedCache) {
+        this.postRepository = postRepository;
+        this.feedCache = feedCache;
+    }
+
+    /**
+     * decays trending scores of all posts by the part of half-life, which passed since previous decay
+     * @return number of updated posts
+     */
+    @Scheduled(fixedRateString = "${custom.trending.decay-interval-minutes}",
+            initialDelayString = "${custom.trending.decay-interval-minutes}",
+            timeUnit = TimeUnit.MINUTES)
+    public int decay(){
+        double factor = Math.pow(0.5, decayIntervalMinutes / (halfLifeHours * 60));
+        int decayed = postRepository.decayTrendingScores(factor, SCORE_THRESHOLD);
+
+        //scores, which dropped to zero, change order of trending pages
+        feedCache.evictSortedByLikes();
+        log.debug("Decayed trending scores of {} posts", decayed);
+        return decayed;
+    }
+
+    /**
+     * weight of like in trending score, which was halved every half-life since like was set
+     * @param likeDate date of like
+     * @return weight between 0 and 1
+     */
+    public double weightOf(LocalDateTime likeDate) {
+        double ageHours = Math.max(Duration.between(likeDate, LocalDateTime.now()).toMillis(), 0) / 3_600_000.0;
+        return Math.pow(0.5, ageHours / halfLifeHours);
+    }
+}
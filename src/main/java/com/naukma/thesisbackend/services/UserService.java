@@ -1,13 +1,26 @@
 package com.naukma.thesisbackend.services;
 
-import com.naukma.thesisbackend.entities.Post;
-import com.naukma.thesisbackend.entities.PostLike;
+import com.naukma.thesisbackend.auth.TokenVersionRegistry;
+import com.naukma.thesisbackend.cache.FeedCache;
+import com.naukma.thesisbackend.cache.PrincipalCache;
+import com.naukma.thesisbackend.dtos.UserAutocompleteDto;
 import com.naukma.thesisbackend.entities.User;
+import com.naukma.thesisbackend.enums.UserRole;
+import com.naukma.thesisbackend.repositories.CommentRepository;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository;
+import com.naukma.thesisbackend.repositories.PostLikeRepository;
+import com.naukma.thesisbackend.repositories.PostRepository;
 import com.naukma.thesisbackend.repositories.UserRepository;
+import com.naukma.thesisbackend.search.LikeRankingIndex;
+import com.naukma.thesisbackend.search.UserSearchIndex;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -16,9 +29,39 @@ import java.util.stream.Collectors;
 public class UserService {
 
     UserRepository userRepository;
+    PostRepository postRepository;
+    CommentRepository commentRepository;
+    PostLikeRepository postLikeRepository;
+    LikeJdbcRepository likeJdbcRepository;
+    UserSearchIndex userSearchIndex;
+    FeedCache feedCache;
+    LikeRankingIndex likeRankingIndex;
+    PrincipalCache principalCache;
+    TokenVersionRegistry tokenVersionRegistry;
+    TrendingScoreService trendingScoreService;
 
-    public UserService(UserRepository userRepository){
+    public UserService(UserRepository userRepository,
+                       PostRepository postRepository,
+                       CommentRepository commentRepository,
+                       PostLikeRepository postLikeRepository,
+                       LikeJdbcRepository likeJdbcRepository,
+                       UserSearchIndex userSearchIndex,
+                       FeedCache feedCache,
+                       LikeRankingIndex likeRankingIndex,
+                       PrincipalCache principalCache,
+                       TokenVersionRegistry tokenVersionRegistry,
+                       TrendingScoreService trendingScoreService){
         this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.postLikeRepository = postLikeRepository;
+        this.likeJdbcRepository = likeJdbcRepository;
+        this.userSearchIndex = userSearchIndex;
+        this.feedCache = feedCache;
+        this.likeRankingIndex = likeRankingIndex;
+        this.principalCache = principalCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.trendingScoreService = trendingScoreService;
     }
 
     /**
@@ -32,31 +75,99 @@ public class UserService {
     }
 
     /**
-     * returns raw list of user's liked posts
+     * method for getting name of avatar image of user without loading the user
      * @param userId id of user
-     * @return liked posts
+     * @return name of avatar image, empty if user has no avatar
+     * @throws EntityNotFoundException if there is no such user
      */
-    public List<Post> getLikedPostsByUserId(String userId){
-        User user = userRepository.findByUserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("No such user"));
+    public String getAvatarOfUser(String userId){
+        return userRepository.findAvatarByUserId(userId)
+                .orElseThrow(()-> new EntityNotFoundException("User not found"));
+    }
 
-        return user.
-                getPostLikes()
-                .stream()
-                .map(PostLike::getPost)
-                .toList();
+    /**
+     * checks if user exists without loading it
+     * @param userId id of user
+     * @return true if user exists
+     */
+    public boolean exists(String userId){
+        return userRepository.existsByUserId(userId);
     }
 
-    public List<Post> getPostsAuthoredBy(String userId){
-        User user = userRepository.findByUserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("No such user"));
+    public User save(User user){
+        User savedUser = userRepository.save(user);
+        //cached pages contain nicknames of authors
+        feedCache.evictAll();
+        //cached principals contain nickname and role of user, and tokens with old role are rejected
+        principalCache.evictUser(user.getUserId());
+        tokenVersionRegistry.evictUser(user.getUserId());
+        return savedUser;
+    }
 
-        return user.getPosts();
+    /**
+     * deletes user together with its posts, comments and likes. Likes are deleted in cascade,
+     * so like counters of posts and comments liked by user are decremented before.
+     * Trending scores of liked posts are decremented by current weights of likes.
+     * Comments of other users under posts of user and in replies to its comments are deleted in cascade too,
+     * so comment counters of their authors are decremented as well
+     * @param userId id of user
+     */
+    @Transactional
+    public void delete(String userId) {
+        Map<Long, Double> likeWeights = new HashMap<>();
+        postLikeRepository.findLikesOfOthersPostsBy(userId)
+                .forEach(like -> likeWeights.put((Long) like[0], trendingScoreService.weightOf((LocalDateTime) like[1])));
+        List<Long> authoredPostIds = postRepository.findPostIdsByAuthor(userId);
+        userRepository.decrementLikesReceivedOfLiker(userId);
+        postRepository.decrementLikeCountsOfLiker(userId);
+        likeJdbcRepository.decrementTrendingScores(likeWeights);
+        commentRepository.decrementLikeCountsOfLiker(userId);
+        commentRepository.countCommentsOfOthersDeletedWithUser(userId)
+                .forEach(author -> userRepository.incrementCommentCount((String) author[0], -((Number) author[1]).intValue()));
+
+        userRepository.deleteById(userId);
+        userSearchIndex.remove(userId);
+        //ranking is changed after commit, only for posts of user and posts liked by it
+        likeWeights.keySet().forEach(postId -> likeRankingIndex.increment(postId, -1));
+        authoredPostIds.forEach(likeRankingIndex::remove);
+        feedCache.evictAll();
+        principalCache.evictUser(userId);
+        tokenVersionRegistry.evictUser(userId);
     }
 
-    public User save(User user){
-        return userRepository.save(user);
+    /**
+     * revokes all issued access tokens of user, so user is signed out on all devices
+     * @param userId id of user
+     * @throws EntityNotFoundException if there is no such user
+     */
+    @Transactional
+    public void revokeTokens(String userId) {
+        if(userRepository.incrementTokenVersion(userId) == 0) throw new EntityNotFoundException("User not found");
+        principalCache.evictUser(userId);
+        tokenVersionRegistry.evictUser(userId);
     }
 
-    public void delete(String userId) {userRepository.deleteById(userId);}
+    /**
+     * changes role of user and revokes its access tokens, since role is stored in them
+     * @param userId id of user
+     * @param role new role
+     * @throws EntityNotFoundException if there is no such user
+     */
+    @Transactional
+    public void changeRole(String userId, UserRole role) {
+        if(userRepository.updateRole(userId, role) == 0) throw new EntityNotFoundException("User not found");
+        userRepository.incrementTokenVersion(userId);
+        principalCache.evictUser(userId);
+        tokenVersionRegistry.evictUser(userId);
+    }
+
+    /**
+     * finds users by part of their id or nickname
+     * @param query part of user id or nickname
+     * @param limit maximal number of users
+     * @return matched users, best matches first
+     */
+    public List<UserAutocompleteDto> autocomplete(String query, int limit){
+        return userSearchIndex.autocomplete(query, limit);
+    }
 }
@@ -0,0 +1,72 @@
+package com.naukma.thesisbackend.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * callbacks bound to current transaction. Used by in-memory caches and indexes, which must not see changes
+ * before they are committed, or see changes which are rolled back
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * runs action after commit of current transaction. Action is dropped if transaction is rolled back,
+     * and is run immediately if there is no transaction
+     * @param action action to run
+     */
+    public static void afterCommit(Runnable action) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+        else action.run();
+    }
+
+    /**
+     * runs action after commit of current transaction, holding lock from before the commit until action is done.
+     * Whoever takes the exclusive side of the lock never sees data committed by transaction without its action.
+     * Should be called inside of transaction, which changes data. Without transaction action is run immediately
+     * @param lock shared side of lock
+     * @param action action to run
+     */
+    public static void afterCommit(Lock lock, Runnable action) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean locked;
+
+                @Override
+                public void beforeCompletion() {
+                    lock.lock();
+                    locked = true;
+                }
+
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if(locked) lock.unlock();
+                }
+            });
+        }
+        else{
+            lock.lock();
+            try {
+                action.run();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
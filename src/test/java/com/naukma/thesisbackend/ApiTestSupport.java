@@ -0,0 +1,156 @@
+package com.naukma.thesisbackend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naukma.thesisbackend.dtos.PostRequestDto;
+import com.naukma.thesisbackend.dtos.SignInDto;
+import com.naukma.thesisbackend.dtos.SignUpDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * base of tests, which call api of application running with in-memory database.
+ * All test classes share one application, so every test creates its own users with unique ids
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:api-tests;DB_CLOSE_DELAY=-1",
+        "custom.import.chunk-size=2",
+        "custom.search-index.max-matches=2"
+})
+@AutoConfigureMockMvc
+public abstract class ApiTestSupport {
+
+    protected static final Path AVATAR_DIRECTORY = createTemporaryDirectory("avatars-");
+    private static final Path SEARCH_INDEX_DIRECTORY = createTemporaryDirectory("search-index-");
+
+    /**
+     * user signed in to application
+     * @param token access token of user
+     */
+    protected record TestUser(String userId, String token) {
+    }
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void storageDirectories(DynamicPropertyRegistry registry) {
+        registry.add("custom.avatar-directory", AVATAR_DIRECTORY::toString);
+        registry.add("custom.search-index.directory", SEARCH_INDEX_DIRECTORY::toString);
+    }
+
+    /**
+     * signs up user with unique id and signs it in
+     * @param prefix beginning of id of user
+     */
+    protected TestUser signUp(String prefix) throws Exception {
+        String userId = prefix + "-" + UUID.randomUUID().toString().substring(0, 8);
+        mockMvc.perform(post("/api/v1/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SignUpDto(userId, "Nick " + userId, userId + "@test", "password"))))
+                .andExpect(status().isCreated());
+        return signIn(userId);
+    }
+
+    /**
+     * signs up user and makes it admin
+     */
+    protected TestUser signUpAdmin(String prefix) throws Exception {
+        TestUser user = signUp(prefix);
+        jdbcTemplate.update("UPDATE \"app-user\" SET role = 'ADMIN' WHERE user_id = ?", user.userId());
+        return signIn(user.userId());
+    }
+
+    protected TestUser signIn(String userId) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/auth/signin")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SignInDto(userId, "password"))))
+                .andExpect(status().isOk())
+                .andReturn();
+        return new TestUser(userId, json(result).get("accessToken").asText());
+    }
+
+    /**
+     * creates post without tags
+     * @return id of created post
+     */
+    protected long createPost(TestUser author, String title) throws Exception {
+        MvcResult result = mockMvc.perform(as(author, post("/api/v1/posts"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new PostRequestDto(title, "content of " + title, List.of()))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return json(result).get("postId").asLong();
+    }
+
+    /**
+     * performs GET request and expects 200
+     * @param user user, on behalf of whom request is sent, null for anonymous request
+     * @return parsed response body
+     */
+    protected JsonNode getJson(String url, TestUser user) throws Exception {
+        MockHttpServletRequestBuilder request = get(url);
+        return json(mockMvc.perform(user != null ? as(user, request) : request)
+                .andExpect(status().isOk())
+                .andReturn());
+    }
+
+    protected static MockHttpServletRequestBuilder as(TestUser user, MockHttpServletRequestBuilder request) {
+        return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + user.token());
+    }
+
+    protected JsonNode json(MvcResult result) throws IOException {
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    /**
+     * creates black and white png with random first row, so images of different tests are not shared
+     */
+    protected static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        for(int x = 0; x < Math.min(width, 64); x++){
+            if(ThreadLocalRandom.current().nextBoolean()) image.setRGB(x, 0, 0xFFFFFF);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static Path createTemporaryDirectory(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
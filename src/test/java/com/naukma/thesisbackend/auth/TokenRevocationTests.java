@@ -0,0 +1,81 @@
+package com.naukma.thesisbackend.auth;
+
+import com.naukma.thesisbackend.ApiTestSupport;
+import com.naukma.thesisbackend.dtos.PostRequestDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TokenRevocationTests extends ApiTestSupport {
+
+    @Test
+    void signOutAllRevokesIssuedTokens() throws Exception {
+        TestUser user = signUp("revoked");
+        TestUser otherDevice = signIn(user.userId());
+        writePost(user).andExpect(status().isCreated());
+        writePost(otherDevice).andExpect(status().isCreated());
+
+        mockMvc.perform(as(user, post("/api/v1/auth/signout-all"))).andExpect(status().isNoContent());
+
+        writePost(user).andExpect(status().isForbidden());
+        writePost(otherDevice).andExpect(status().isForbidden());
+        writePost(signIn(user.userId())).andExpect(status().isCreated());
+    }
+
+    @Test
+    void roleChangeRevokesIssuedTokens() throws Exception {
+        TestUser admin = signUpAdmin("admin");
+        TestUser user = signUp("promoted");
+        writePost(user).andExpect(status().isCreated());
+        mockMvc.perform(as(user, get("/api/v1/admin/feed-cache/stats"))).andExpect(status().isForbidden());
+
+        mockMvc.perform(as(admin, put("/api/v1/admin/users/" + user.userId() + "/role").param("role", "ADMIN")))
+                .andExpect(status().isOk());
+
+        //token with the old role is rejected, even though the new role is wider
+        writePost(user).andExpect(status().isForbidden());
+        TestUser promoted = signIn(user.userId());
+        mockMvc.perform(as(promoted, get("/api/v1/admin/feed-cache/stats"))).andExpect(status().isOk());
+
+        mockMvc.perform(as(admin, put("/api/v1/admin/users/" + user.userId() + "/role").param("role", "USER")))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(promoted, get("/api/v1/admin/feed-cache/stats"))).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void roleOfUnknownUserCantBeChanged() throws Exception {
+        TestUser admin = signUpAdmin("admin");
+        mockMvc.perform(as(admin, put("/api/v1/admin/users/no-such-user/role").param("role", "ADMIN")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void writesOfUserDeletedAfterTokenCheckAreRejected() throws Exception {
+        TestUser user = signUp("deleted");
+        writePost(user).andExpect(status().isCreated());
+        long postId = createPost(signUp("author"), "commented post");
+
+        //user is deleted bypassing application, so its token version stays cached
+        jdbcTemplate.update("DELETE FROM post WHERE user_id = ?", user.userId());
+        jdbcTemplate.update("DELETE FROM \"app-user\" WHERE user_id = ?", user.userId());
+
+        writePost(user).andExpect(status().isUnauthorized());
+        mockMvc.perform(as(user, post("/api/v1/posts/" + postId + "/comments"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"content\":\"comment of deleted user\"}"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private ResultActions writePost(TestUser user) throws Exception {
+        return mockMvc.perform(as(user, post("/api/v1/posts"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new PostRequestDto("title", "content", List.of()))));
+    }
+}
@@ -0,0 +1,85 @@
+package com.naukma.thesisbackend.cache;
+
+import com.naukma.thesisbackend.dtos.PostDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedCacheTests {
+
+    private static final LocalDateTime POSTED_DATE = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final FeedCache feedCache = new FeedCache(100, 600);
+
+    @Test
+    void likeEvictsOnlyPagesWithLikedPost() {
+        FeedCacheKey withPost = key("author", "postedDate", 0);
+        FeedCacheKey withoutPost = key("author", "postedDate", 1);
+        feedCache.get(withPost, () -> page(1L, 2L));
+        feedCache.get(withoutPost, () -> page(3L, 4L));
+
+        feedCache.evictLikes(Set.of(2L));
+
+        assertThat(isCached(withPost)).isFalse();
+        assertThat(isCached(withoutPost)).isTrue();
+    }
+
+    @Test
+    void likeDoesNotEvictPagesSortedByLikes() {
+        FeedCacheKey mostLiked = key(null, "likeCount", 0);
+        FeedCacheKey trending = key(null, "trendingScore", 0);
+        feedCache.get(mostLiked, () -> page(1L, 2L));
+        feedCache.get(trending, () -> page(2L, 1L));
+
+        feedCache.evictLikes(Set.of(1L, 2L));
+
+        //such pages change with every like, so they expire by time instead
+        assertThat(isCached(mostLiked)).isTrue();
+        assertThat(isCached(trending)).isTrue();
+
+        feedCache.evictSortedByLikes();
+        assertThat(isCached(mostLiked)).isFalse();
+        assertThat(isCached(trending)).isFalse();
+    }
+
+    @Test
+    void newPostEvictsOnlyPagesWhichMayContainIt() {
+        FeedCacheKey ofAuthor = key("author", "postedDate", 0);
+        FeedCacheKey ofOtherAuthor = key("other", "postedDate", 0);
+        feedCache.get(ofAuthor, () -> page(1L));
+        feedCache.get(ofOtherAuthor, () -> page(2L));
+
+        feedCache.evictPost("author", List.of(), POSTED_DATE);
+
+        assertThat(isCached(ofAuthor)).isFalse();
+        assertThat(isCached(ofOtherAuthor)).isTrue();
+    }
+
+    private boolean isCached(FeedCacheKey key) {
+        AtomicInteger loads = new AtomicInteger();
+        feedCache.get(key, () -> {
+            loads.incrementAndGet();
+            return page();
+        });
+        return loads.get() == 0;
+    }
+
+    private static FeedCacheKey key(String authorId, String sortProperty, int page) {
+        return FeedCacheKey.of(authorId, null, null, null, null, null, sortProperty, false, page, 2);
+    }
+
+    private static Page<PostDto> page(Long... postIds) {
+        return new PageImpl<>(Arrays.stream(postIds)
+                .map(postId -> new PostDto(postId, "title", "content", POSTED_DATE, 0, List.of(), null, false,
+                        "author", "nickname", List.of()))
+                .toList());
+    }
+}
@@ -0,0 +1,101 @@
+package com.naukma.thesisbackend.cache;
+
+import com.naukma.thesisbackend.auth.CustomUserDetails;
+import com.naukma.thesisbackend.cache.PrincipalCache.CachedPrincipal;
+import com.naukma.thesisbackend.enums.UserRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrincipalCacheTests {
+
+    private final PrincipalCache principalCache = new PrincipalCache(100, 600);
+
+    @Test
+    void tokenIsVerifiedOnlyOnFirstRequest() {
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, CachedPrincipal> loader = token -> {
+            loads.incrementAndGet();
+            return principal("user", Instant.now().plus(Duration.ofHours(1)));
+        };
+
+        assertThat(principalCache.get("token", loader).getUsername()).isEqualTo("user");
+        assertThat(principalCache.get("token", loader).getUsername()).isEqualTo("user");
+        assertThat(loads).hasValue(1);
+
+        principalCache.get("other token", loader);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidTokenIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, CachedPrincipal> loader = token -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertThat(principalCache.get("token", loader)).isNull();
+        assertThat(principalCache.get("token", loader)).isNull();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void expiredTokenIsNotKept() {
+        principalCache.get("token", token -> principal("user", Instant.now().minusSeconds(1)));
+
+        assertThat(principalCache.get("token", token -> null)).isNull();
+    }
+
+    @Test
+    void evictionRemovesOnlyPrincipalsOfUser() {
+        principalCache.get("first token", token -> principal("evicted", null));
+        principalCache.get("second token", token -> principal("evicted", null));
+        principalCache.get("other token", token -> principal("other", null));
+
+        principalCache.evictUser("evicted");
+
+        assertThat(principalCache.get("first token", token -> null)).isNull();
+        assertThat(principalCache.get("second token", token -> null)).isNull();
+        assertThat(principalCache.get("other token", token -> null).getUsername()).isEqualTo("other");
+    }
+
+    @Test
+    void principalLoadedDuringEvictionIsNotCached() {
+        CustomUserDetails loaded = principalCache.get("token", token -> {
+            principalCache.evictUser("user");
+            return principal("user", null);
+        });
+
+        assertThat(loaded.getUsername()).isEqualTo("user");
+        assertThat(principalCache.get("token", token -> null)).isNull();
+    }
+
+    @Test
+    void evictionInsideTransactionIsDoneAfterCommit() {
+        principalCache.get("token", token -> principal("user", null));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            principalCache.evictUser("user");
+            assertThat(principalCache.get("token", token -> null)).isNotNull();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(principalCache.get("token", token -> null)).isNull();
+    }
+
+    private static CachedPrincipal principal(String userId, Instant expiresAt) {
+        return new CachedPrincipal(new CustomUserDetails(userId, "Nick " + userId, UserRole.USER, 0), expiresAt);
+    }
+}
@@ -0,0 +1,82 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.naukma.thesisbackend.ApiTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AvatarStorageTests extends ApiTestSupport {
+
+    @Test
+    void sameImageIsStoredOnceUnderHashOfContent() throws Exception {
+        byte[] image = png(64, 64);
+        TestUser first = signUp("avatar");
+        TestUser second = signUp("avatar");
+
+        uploadAvatar(first, image, "first.png", MediaType.IMAGE_PNG_VALUE).andExpect(status().isOk());
+        //extension and type of request don't matter, the stored name is given by content
+        uploadAvatar(second, image, "second.jpg", MediaType.IMAGE_JPEG_VALUE).andExpect(status().isOk());
+
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(image));
+        String avatarUrl = avatarUrl(first);
+        assertThat(avatarUrl).isEqualTo("/api/v1/avatars/" + hash + ".png");
+        assertThat(avatarUrl(second)).isEqualTo(avatarUrl);
+
+        Path stored = AVATAR_DIRECTORY.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + ".png");
+        assertThat(stored).hasBinaryContent(image);
+        try (var files = Files.list(stored.getParent())) {
+            assertThat(files.filter(file -> !file.getFileName().toString().contains("@"))).containsExactly(stored);
+        }
+
+        mockMvc.perform(get(avatarUrl))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + hash + "\""))
+                .andExpect(content().bytes(image));
+    }
+
+    @Test
+    void fileWhichIsNotImageIsRejected() throws Exception {
+        TestUser user = signUp("avatar");
+        byte[] page = "<html><script>alert(1)</script></html>".getBytes(StandardCharsets.UTF_8);
+
+        uploadAvatar(user, page, "avatar.png", MediaType.IMAGE_PNG_VALUE).andExpect(status().isBadRequest());
+        uploadAvatar(user, png(8, 8), "avatar.html", MediaType.TEXT_HTML_VALUE).andExpect(status().isBadRequest());
+
+        assertThat(getJson("/api/v1/users/" + user.userId(), null).get("avatarUrl").isNull()).isTrue();
+    }
+
+    @Test
+    void imageWithTooManyPixelsIsRejected() throws Exception {
+        TestUser user = signUp("avatar");
+
+        //compressed file is small, but decoded image would exceed the pixel cap
+        uploadAvatar(user, png(5000, 5000), "avatar.png", MediaType.IMAGE_PNG_VALUE).andExpect(status().isBadRequest());
+
+        assertThat(getJson("/api/v1/users/" + user.userId(), null).get("avatarUrl").isNull()).isTrue();
+    }
+
+    private ResultActions uploadAvatar(TestUser user, byte[] content, String fileName, String contentType) throws Exception {
+        return mockMvc.perform(as(user, multipart("/api/v1/users/" + user.userId() + "/avatar")
+                .file(new MockMultipartFile("avatar", fileName, contentType, content))));
+    }
+
+    private String avatarUrl(TestUser user) throws Exception {
+        return getJson("/api/v1/users/" + user.userId(), null).get("avatarUrl").asText();
+    }
+}
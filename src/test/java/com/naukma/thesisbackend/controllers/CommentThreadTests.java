@@ -0,0 +1,143 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.naukma.thesisbackend.ApiTestSupport;
+import com.naukma.thesisbackend.dtos.CommentRequestDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * checks shape of comment threads of post with tree:
+ * <pre>
+ * top
+ *   first reply
+ *   second reply
+ *   latest reply
+ *     nested reply
+ *       deepest reply
+ * other top
+ * </pre>
+ */
+class CommentThreadTests extends ApiTestSupport {
+
+    private TestUser user;
+    private long postId;
+    private long top;
+    private long firstReply;
+    private long secondReply;
+    private long latestReply;
+    private long nestedReply;
+    private long deepestReply;
+    private long otherTop;
+
+    @BeforeEach
+    void createComments() throws Exception {
+        user = signUp("commenter");
+        postId = createPost(user, "commented post");
+
+        top = createComment("top", null);
+        firstReply = createComment("first reply", top);
+        secondReply = createComment("second reply", top);
+        latestReply = createComment("latest reply", top);
+        nestedReply = createComment("nested reply", latestReply);
+        deepestReply = createComment("deepest reply", nestedReply);
+        otherTop = createComment("other top", null);
+    }
+
+    @Test
+    void threadsAreLimitedByDepthAndRepliesSize() throws Exception {
+        JsonNode page = getJson("/api/v1/posts/" + postId + "/comments/threads?size=10&depth=2&repliesSize=2", null);
+
+        assertThat(ids(page.get("content"))).containsExactly(otherTop, top);
+        assertThat(page.get("nextCursor").isNull()).isTrue();
+
+        JsonNode topThread = page.get("content").get(1);
+        assertThat(topThread.get("replyCount").asInt()).isEqualTo(3);
+        assertThat(ids(topThread.get("replies"))).containsExactly(latestReply, secondReply);
+        assertThat(topThread.get("repliesCursor").isNull()).isFalse();
+
+        JsonNode latest = topThread.get("replies").get(0);
+        assertThat(ids(latest.get("replies"))).containsExactly(nestedReply);
+
+        //the third level is not loaded, but its count is known
+        JsonNode nested = latest.get("replies").get(0);
+        assertThat(nested.get("replyCount").asInt()).isEqualTo(1);
+        assertThat(nested.get("replies")).isEmpty();
+
+        JsonNode rest = getJson("/api/v1/comments/" + top + "/replies?size=10&cursor=" + topThread.get("repliesCursor").asText(), null);
+        assertThat(ids(rest.get("content"))).containsExactly(firstReply);
+        assertThat(rest.get("nextCursor").isNull()).isTrue();
+    }
+
+    @Test
+    void topLevelCommentsArePaged() throws Exception {
+        JsonNode first = getJson("/api/v1/posts/" + postId + "/comments/threads?size=1&depth=0", null);
+        assertThat(ids(first.get("content"))).containsExactly(otherTop);
+        assertThat(first.get("content").get(0).get("replies")).isEmpty();
+
+        JsonNode second = getJson("/api/v1/posts/" + postId + "/comments/threads?size=1&depth=0&cursor="
+                + first.get("nextCursor").asText(), null);
+        assertThat(ids(second.get("content"))).containsExactly(top);
+        assertThat(second.get("nextCursor").isNull()).isTrue();
+    }
+
+    @Test
+    void commentContainsItsWholeSubtree() throws Exception {
+        JsonNode thread = getJson("/api/v1/comments/" + top, null);
+
+        assertThat(thread.get("commentId").asLong()).isEqualTo(top);
+        assertThat(ids(thread.get("replies"))).containsExactly(latestReply, secondReply, firstReply);
+        JsonNode nested = thread.get("replies").get(0).get("replies").get(0);
+        assertThat(nested.get("commentId").asLong()).isEqualTo(nestedReply);
+        assertThat(ids(nested.get("replies"))).containsExactly(deepestReply);
+    }
+
+    @Test
+    void newCommentIsReturnedWithoutReplies() throws Exception {
+        JsonNode comment = json(mockMvc.perform(comment("new reply", top)).andExpect(status().isOk()).andReturn());
+
+        assertThat(comment.get("content").asText()).isEqualTo("new reply");
+        assertThat(comment.get("replyTo").asLong()).isEqualTo(top);
+        assertThat(comment.get("replyCount").asInt()).isZero();
+        assertThat(comment.get("replies")).isEmpty();
+    }
+
+    @Test
+    void editedCommentIsReturnedWithItsSubtree() throws Exception {
+        JsonNode comment = json(mockMvc.perform(as(user, patch("/api/v1/comments/" + latestReply))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CommentRequestDto("edited reply"))))
+                .andExpect(status().isOk())
+                .andReturn());
+
+        assertThat(comment.get("edited").asBoolean()).isTrue();
+        assertThat(ids(comment.get("replies"))).containsExactly(nestedReply);
+        assertThat(ids(comment.get("replies").get(0).get("replies"))).containsExactly(deepestReply);
+    }
+
+    private long createComment(String content, Long replyTo) throws Exception {
+        return json(mockMvc.perform(comment(content, replyTo)).andExpect(status().isOk()).andReturn()).get("commentId").asLong();
+    }
+
+    private MockHttpServletRequestBuilder comment(String content, Long replyTo) throws Exception {
+        return as(user, post("/api/v1/posts/" + postId + "/comments" + (replyTo != null ? "?replyTo=" + replyTo : "")))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new CommentRequestDto(content)));
+    }
+
+    private static List<Long> ids(JsonNode comments) {
+        List<Long> ids = new ArrayList<>();
+        comments.forEach(comment -> ids.add(comment.get("commentId").asLong()));
+        return ids;
+    }
+}
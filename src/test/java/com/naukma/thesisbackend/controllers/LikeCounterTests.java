@@ -0,0 +1,111 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.naukma.thesisbackend.ApiTestSupport;
+import com.naukma.thesisbackend.dtos.CommentRequestDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class LikeCounterTests extends ApiTestSupport {
+
+    @Test
+    void concurrentLikesAreCountedOnce() throws Exception {
+        TestUser author = signUp("liked");
+        long postId = createPost(author, "liked post");
+        List<TestUser> likers = new ArrayList<>();
+        for(int i = 0; i < 8; i++) likers.add(signUp("liker"));
+
+        //every user sets its like twice, so repeated requests race with each other
+        List<Callable<Void>> requests = new ArrayList<>();
+        for(TestUser liker : likers){
+            for(int i = 0; i < 2; i++){
+                requests.add(() -> {
+                    mockMvc.perform(as(liker, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+                    return null;
+                });
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for(Future<Void> request : executor.invokeAll(requests)) request.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertPostCounters(postId, 8);
+        assertThat(likesReceived(author)).isEqualTo(8);
+        assertThat(getJson("/api/v1/posts/" + postId + "?comments=false", likers.get(0)).get("isLiked").asBoolean()).isTrue();
+    }
+
+    @Test
+    void toggledAndRemovedLikesAreSubtracted() throws Exception {
+        TestUser author = signUp("liked");
+        long postId = createPost(author, "toggled post");
+        TestUser first = signUp("liker");
+        TestUser second = signUp("liker");
+
+        mockMvc.perform(as(first, patch("/api/v1/posts/" + postId + "/toggle-like"))).andExpect(status().isOk());
+        mockMvc.perform(as(second, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        assertPostCounters(postId, 2);
+
+        mockMvc.perform(as(first, patch("/api/v1/posts/" + postId + "/toggle-like"))).andExpect(status().isOk());
+        mockMvc.perform(as(second, delete("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        mockMvc.perform(as(second, delete("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        assertPostCounters(postId, 0);
+        assertThat(likesReceived(author)).isZero();
+    }
+
+    @Test
+    void likesOfDeletedUserAreSubtracted() throws Exception {
+        TestUser author = signUp("liked");
+        long postId = createPost(author, "post liked by deleted user");
+        TestUser staying = signUp("liker");
+        TestUser deleted = signUp("liker");
+
+        long commentId = json(mockMvc.perform(as(staying, post("/api/v1/posts/" + postId + "/comments"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CommentRequestDto("liked comment"))))
+                .andExpect(status().isOk())
+                .andReturn()).get("commentId").asLong();
+        for(TestUser liker : List.of(staying, deleted)){
+            mockMvc.perform(as(liker, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+            mockMvc.perform(as(liker, put("/api/v1/comments/" + commentId + "/like"))).andExpect(status().isOk());
+        }
+        assertPostCounters(postId, 2);
+
+        mockMvc.perform(as(deleted, delete("/api/v1/users/" + deleted.userId()))).andExpect(status().isOk());
+
+        assertPostCounters(postId, 1);
+        assertThat(likesReceived(author)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM comment WHERE comment_id = ?", Integer.class, commentId))
+                .isEqualTo(1);
+    }
+
+    /**
+     * checks that counter of post matches its likes in database and in api
+     */
+    private void assertPostCounters(long postId, int likes) throws Exception {
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM post_like WHERE post_id = ?", Integer.class, postId))
+                .isEqualTo(likes);
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM post WHERE post_id = ?", Integer.class, postId))
+                .isEqualTo(likes);
+        assertThat(getJson("/api/v1/posts/" + postId + "?comments=false", null).get("likes").asInt()).isEqualTo(likes);
+    }
+
+    private int likesReceived(TestUser user) {
+        return jdbcTemplate.queryForObject("SELECT likes_received FROM \"app-user\" WHERE user_id = ?", Integer.class, user.userId());
+    }
+}
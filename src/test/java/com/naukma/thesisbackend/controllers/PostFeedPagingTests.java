@@ -0,0 +1,92 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.naukma.thesisbackend.ApiTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PostFeedPagingTests extends ApiTestSupport {
+
+    private TestUser author;
+
+    /**
+     * ids of posts of author, newest first
+     */
+    private final List<Long> postIds = new ArrayList<>();
+
+    @BeforeEach
+    void createPosts() throws Exception {
+        author = signUp("pager");
+        for(int i = 0; i < 7; i++) postIds.add(createPost(author, "post " + i));
+        Collections.reverse(postIds);
+
+        //posts in the middle have the same date, so they are ordered only by id
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for(int i = 0; i < postIds.size(); i++){
+            LocalDateTime postedDate = i >= 1 && i <= 5 ? base : base.minusHours(i - 3);
+            jdbcTemplate.update("UPDATE post SET posted_date = ? WHERE post_id = ?", Timestamp.valueOf(postedDate), postIds.get(i));
+        }
+    }
+
+    @Test
+    void pagesContainEveryPostOnceNewestFirst() throws Exception {
+        assertThat(readFeed("DESC", 2)).containsExactlyElementsOf(postIds);
+    }
+
+    @Test
+    void pagesContainEveryPostOnceOldestFirst() throws Exception {
+        List<Long> oldestFirst = new ArrayList<>(postIds);
+        Collections.reverse(oldestFirst);
+        assertThat(readFeed("ASC", 2)).containsExactlyElementsOf(oldestFirst);
+    }
+
+    @Test
+    void pageBoundaryInsidePostsWithTheSameDate() throws Exception {
+        for(int size = 1; size <= postIds.size(); size++){
+            assertThat(readFeed("DESC", size)).as("page size %d", size).containsExactlyElementsOf(postIds);
+        }
+    }
+
+    @Test
+    void sizeOutsideOfBoundsIsRejected() throws Exception {
+        mockMvc.perform(get("/api/v1/posts/feed").param("size", "0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/posts/feed").param("size", "-1")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/posts/feed").param("size", String.valueOf(PageLimits.MAX_PAGE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void invalidCursorIsRejected() throws Exception {
+        mockMvc.perform(get("/api/v1/posts/feed").param("cursor", "not a cursor")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * reads all pages of posts of author
+     * @return ids of posts in order of pages
+     */
+    private List<Long> readFeed(String sortDirection, int size) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            String url = "/api/v1/posts/feed?authorId=" + author.userId() + "&sortDirection=" + sortDirection + "&size=" + size
+                    + (cursor != null ? "&cursor=" + cursor : "");
+            JsonNode page = getJson(url, null);
+            assertThat(page.get("content").size()).isLessThanOrEqualTo(size);
+            page.get("content").forEach(post -> ids.add(post.get("postId").asLong()));
+
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            assertThat(ids.size()).isLessThanOrEqualTo(postIds.size());
+        } while (cursor != null);
+        return ids;
+    }
+}
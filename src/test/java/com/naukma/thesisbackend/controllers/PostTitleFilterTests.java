@@ -0,0 +1,72 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.naukma.thesisbackend.ApiTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * title filter matches any part of title, as database LIKE does. Search index only narrows the posts checked by database
+ */
+class PostTitleFilterTests extends ApiTestSupport {
+
+    /**
+     * unique word, so posts of other tests don't match filters
+     */
+    private String word;
+    private TestUser author;
+
+    @BeforeEach
+    void createAuthor() throws Exception {
+        word = "w" + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
+        author = signUp("titled");
+    }
+
+    @Test
+    void partOfWordMatchesTitle() throws Exception {
+        long postId = createPost(author, "Spring" + word + " notes");
+
+        String filter = "ring" + word.substring(0, 6);
+        assertThat(filterPosts("/api/v1/posts?title=" + filter)).containsExactly(postId);
+        assertThat(filterPosts("/api/v1/posts/feed?title=" + filter)).containsExactly(postId);
+    }
+
+    @Test
+    void titleWithAllTrigramsButNotSubstringDoesNotMatch() throws Exception {
+        long postId = createPost(author, word + "abc and bcd");
+
+        assertThat(filterPosts("/api/v1/posts?title=" + word + "abc")).containsExactly(postId);
+        //title has all trigrams of the filter, but not the filter itself
+        assertThat(filterPosts("/api/v1/posts?title=" + word.substring(5) + "abcd")).isEmpty();
+    }
+
+    @Test
+    void filterMatchingManyPostsIsAppliedByDatabase() throws Exception {
+        List<Long> postIds = new ArrayList<>();
+        for(int i = 0; i < 4; i++) postIds.add(createPost(author, "common " + word + " " + i));
+
+        //there are more matches than candidates allowed in tests
+        assertThat(filterPosts("/api/v1/posts?title=" + word)).containsExactlyInAnyOrderElementsOf(postIds);
+        assertThat(filterPosts("/api/v1/posts/feed?title=" + word)).containsExactlyInAnyOrderElementsOf(postIds);
+    }
+
+    @Test
+    void filterShorterThanTrigramMatchesTitle() throws Exception {
+        long postId = createPost(author, "Qz " + word);
+        createPost(author, "other " + word);
+
+        assertThat(filterPosts("/api/v1/posts?authorId=" + author.userId() + "&title=Qz")).containsExactly(postId);
+    }
+
+    private List<Long> filterPosts(String url) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        getJson(url, null).get("content").forEach((JsonNode post) -> ids.add(post.get("postId").asLong()));
+        return ids;
+    }
+}
@@ -0,0 +1,55 @@
+package com.naukma.thesisbackend.controllers;
+
+import com.naukma.thesisbackend.ApiTestSupport;
+import com.naukma.thesisbackend.dtos.CommentRequestDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class UserCounterTests extends ApiTestSupport {
+
+    @Test
+    void commentsDeletedWithUserAreSubtractedFromTheirAuthors() throws Exception {
+        TestUser deleted = signUp("deleted");
+        TestUser first = signUp("commenter");
+        TestUser second = signUp("commenter");
+        long postOfDeleted = createPost(deleted, "post of deleted user");
+        long otherPost = createPost(first, "post of other user");
+
+        //comments under post of deleted user
+        long underPost = createComment(first, postOfDeleted, null);
+        createComment(second, postOfDeleted, underPost);
+        //replies to comment of deleted user under other post, at any depth
+        long ofDeleted = createComment(deleted, otherPost, null);
+        long reply = createComment(second, otherPost, ofDeleted);
+        createComment(first, otherPost, reply);
+        createComment(first, otherPost, null);
+        assertThat(commentCount(first)).isEqualTo(3);
+        assertThat(commentCount(second)).isEqualTo(2);
+
+        mockMvc.perform(as(deleted, delete("/api/v1/users/" + deleted.userId()))).andExpect(status().isOk());
+
+        assertThat(commentCount(first)).isEqualTo(1);
+        assertThat(commentCount(second)).isZero();
+        for(TestUser user : new TestUser[]{first, second}){
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comment WHERE user_id = ?", Integer.class, user.userId()))
+                    .isEqualTo(commentCount(user));
+        }
+    }
+
+    private long createComment(TestUser user, long postId, Long replyTo) throws Exception {
+        return json(mockMvc.perform(as(user, post("/api/v1/posts/" + postId + "/comments" + (replyTo != null ? "?replyTo=" + replyTo : "")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CommentRequestDto("comment"))))
+                .andExpect(status().isOk())
+                .andReturn()).get("commentId").asLong();
+    }
+
+    private int commentCount(TestUser user) throws Exception {
+        return getJson("/api/v1/users/" + user.userId(), null).get("commentCount").asInt();
+    }
+}
@@ -0,0 +1,206 @@
+package com.naukma.thesisbackend.search;
+
+import com.naukma.thesisbackend.repositories.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * database is simulated by map of like counters, which is read by rebuild while it is changed
+ */
+class LikeRankingIndexTests {
+
+    private final Map<Long, Integer> likeCounts = new ConcurrentSkipListMap<>();
+    private LikeRankingIndex likeRankingIndex;
+
+    /**
+     * called with id of every post read by rebuild
+     */
+    private LongConsumer onPostRead = postId -> {};
+
+    /**
+     * called after counters of changed posts are read again
+     */
+    private Runnable onRefresh = () -> {};
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void createIndex() {
+        PostRepository postRepository = mock(PostRepository.class);
+        when(postRepository.streamPostLikeCounts()).thenAnswer(invocation -> likeCounts.keySet().stream()
+                .map(postId -> {
+                    Object[] post = {postId, likeCounts.get(postId)};
+                    onPostRead.accept(postId);
+                    return post;
+                })
+                .filter(post -> post[1] != null));
+        when(postRepository.findLikeCounts(anyCollection())).thenAnswer(invocation -> {
+            List<Object[]> posts = new ArrayList<>();
+            for(Long postId : (Collection<Long>) invocation.getArgument(0)){
+                Integer likeCount = likeCounts.get(postId);
+                if(likeCount != null) posts.add(new Object[]{postId, likeCount});
+            }
+            onRefresh.run();
+            return posts;
+        });
+        likeRankingIndex = new LikeRankingIndex(postRepository);
+    }
+
+    @Test
+    void likesCommittedWhileRankingIsReadAreCountedOnce() {
+        likeCounts.putAll(Map.of(1L, 0, 2L, 0, 3L, 5));
+        onPostRead = postId -> {
+            if(postId == 1L){
+                //post 1 is already read with its old counter, post 2 will be read with the new one
+                like(1L);
+                like(2L);
+            }
+        };
+
+        likeRankingIndex.rebuild();
+
+        assertThat(likeRankingIndex.likeCountOf(1L)).isEqualTo(1);
+        assertThat(likeRankingIndex.likeCountOf(2L)).isEqualTo(1);
+        assertThat(likeRankingIndex.findPostIds(false, 0, 10)).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    void postsChangedWhileRankingIsReadKeepTheirLatestState() {
+        likeCounts.putAll(Map.of(1L, 2, 2L, 0));
+        onPostRead = postId -> {
+            if(postId == 2L){
+                likeCounts.remove(1L);
+                likeRankingIndex.remove(1L);
+                likeCounts.put(3L, 0);
+                likeRankingIndex.add(3L);
+            }
+        };
+
+        likeRankingIndex.rebuild();
+
+        assertThat(likeRankingIndex.likeCountOf(1L)).isNull();
+        assertThat(likeRankingIndex.findPostIds(false, 0, 10)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void likeCommittedWhileChangedPostsAreReadAgainIsCounted() {
+        likeCounts.putAll(Map.of(1L, 0, 2L, 0));
+        onPostRead = postId -> {
+            if(postId == 2L) like(1L);
+        };
+        AtomicBoolean likedDuringRefresh = new AtomicBoolean();
+        onRefresh = () -> {
+            //post 1 is read again, but the like comes right after that
+            if(likedDuringRefresh.compareAndSet(false, true)) like(1L);
+        };
+
+        likeRankingIndex.rebuild();
+
+        assertThat(likeRankingIndex.likeCountOf(1L)).isEqualTo(2);
+    }
+
+    @Test
+    void likeCommittedBeforeRebuildIsNotCountedTwice() throws Exception {
+        likeCounts.put(1L, 0);
+        likeRankingIndex.rebuild();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            likeRankingIndex.increment(1L, 1);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::beforeCompletion);
+            likeCounts.merge(1L, 1, Integer::sum);
+
+            //rebuild reads committed like, which is not applied to ranking yet
+            Thread rebuild = new Thread(likeRankingIndex::rebuild);
+            rebuild.start();
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while(rebuild.getState() != Thread.State.WAITING && rebuild.isAlive() && System.nanoTime() < deadline){
+                LockSupport.parkNanos(1_000_000);
+            }
+
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            rebuild.join();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(likeRankingIndex.likeCountOf(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentLikesDuringRebuildsAreCountedOnce() throws Exception {
+        for(long postId = 1; postId <= 20; postId++) likeCounts.put(postId, 0);
+        likeRankingIndex.rebuild();
+        //slow reading makes likes overlap with every rebuild
+        onPostRead = postId -> LockSupport.parkNanos(50_000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> likers = new ArrayList<>();
+        try {
+            for(int thread = 0; thread < 4; thread++){
+                likers.add(executor.submit(() -> {
+                    for(int i = 0; i < 300; i++){
+                        likeInTransaction(ThreadLocalRandom.current().nextLong(1, 21));
+                        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(100_000));
+                    }
+                }));
+            }
+            while(!likers.stream().allMatch(Future::isDone)) likeRankingIndex.rebuild();
+            for(Future<?> liker : likers) liker.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        likeCounts.forEach((postId, likeCount) -> assertThat(likeRankingIndex.likeCountOf(postId))
+                .as("likes of post %d", postId)
+                .isEqualTo(likeCount));
+    }
+
+    /**
+     * writes like without transaction, so it is applied to ranking right after it is written
+     */
+    private void like(Long postId) {
+        likeCounts.merge(postId, 1, Integer::sum);
+        likeRankingIndex.increment(postId, 1);
+    }
+
+    /**
+     * writes like in transaction, which changes ranking after commit
+     */
+    private void likeInTransaction(Long postId) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            likeRankingIndex.increment(postId, 1);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+            synchronizations.forEach(TransactionSynchronization::beforeCompletion);
+            likeCounts.merge(postId, 1, Integer::sum);
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
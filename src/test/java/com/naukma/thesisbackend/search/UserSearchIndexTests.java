@@ -0,0 +1,50 @@
+package com.naukma.thesisbackend.search;
+
+import com.naukma.thesisbackend.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class UserSearchIndexTests {
+
+    private final UserSearchIndex userSearchIndex = new UserSearchIndex(mock(UserRepository.class));
+
+    @Test
+    void userIsIndexedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userSearchIndex.add("committed", "Committed user");
+            assertThat(userSearchIndex.findUserIdsContaining("commit")).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(userSearchIndex.findUserIdsContaining("commit")).containsExactly("committed");
+    }
+
+    @Test
+    void changesOfRolledBackTransactionAreDropped() {
+        userSearchIndex.add("kept", "Kept user");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userSearchIndex.add("rolled", "Rolled back user");
+            userSearchIndex.remove("kept");
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(userSearchIndex.findUserIdsContaining("rolled")).isEmpty();
+        assertThat(userSearchIndex.autocomplete("user", 10)).extracting("userId").isEqualTo(List.of("kept"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.naukma.thesisbackend.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.naukma.thesisbackend.ApiTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * files are made older than grace period by changing their modification time
+ */
+class AvatarSweepTests extends ApiTestSupport {
+
+    @Test
+    void unreferencedFilesOlderThanGracePeriodAreDeleted() throws Exception {
+        TestUser admin = signUpAdmin("sweeper");
+        Path referenced = uploadAvatar(signUp("kept"));
+        TestUser removing = signUp("removed");
+        Path unreferenced = uploadAvatar(removing);
+        TestUser recentlyRemoving = signUp("recent");
+        Path recent = uploadAvatar(recentlyRemoving);
+
+        //deleted avatars are kept by request, since they are still in grace period
+        mockMvc.perform(as(removing, delete("/api/v1/users/" + removing.userId() + "/avatar"))).andExpect(status().isOk());
+        mockMvc.perform(as(recentlyRemoving, delete("/api/v1/users/" + recentlyRemoving.userId() + "/avatar"))).andExpect(status().isOk());
+        assertThat(unreferenced).exists();
+        assertThat(recent).exists();
+
+        Path temporary = Files.createTempFile(AVATAR_DIRECTORY, "upload-", ".tmp");
+        for(Path file : new Path[]{referenced, thumbnail(referenced), unreferenced, thumbnail(unreferenced), temporary}){
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        }
+
+        JsonNode report = json(mockMvc.perform(as(admin, post("/api/v1/admin/avatars/sweep")))
+                .andExpect(status().isOk())
+                .andReturn());
+
+        assertThat(report.get("deletedFiles").asLong()).isGreaterThanOrEqualTo(3);
+        assertThat(report.get("reclaimedBytes").asLong()).isPositive();
+        assertThat(referenced).exists();
+        assertThat(thumbnail(referenced)).exists();
+        assertThat(unreferenced).doesNotExist();
+        assertThat(thumbnail(unreferenced)).doesNotExist();
+        assertThat(temporary).doesNotExist();
+        assertThat(recent).exists();
+    }
+
+    /**
+     * uploads new avatar of user and waits for its smallest thumbnail
+     * @return path of stored image
+     */
+    private Path uploadAvatar(TestUser user) throws Exception {
+        mockMvc.perform(as(user, multipart("/api/v1/users/" + user.userId() + "/avatar")
+                        .file(new MockMultipartFile("avatar", "avatar.png", MediaType.IMAGE_PNG_VALUE, png(64, 64)))))
+                .andExpect(status().isOk());
+
+        String avatarUrl = getJson("/api/v1/users/" + user.userId(), null).get("avatarUrl").asText();
+        Path image = AvatarPaths.resolve(AVATAR_DIRECTORY.toString(), avatarUrl.substring(avatarUrl.lastIndexOf('/') + 1));
+
+        //thumbnails are generated in background, so sweep would race with them
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while(!Files.exists(thumbnail(image)) && System.nanoTime() < deadline) LockSupport.parkNanos(10_000_000);
+        assertThat(thumbnail(image)).exists();
+        return image;
+    }
+
+    private static Path thumbnail(Path image) {
+        return image.resolveSibling(image.getFileName() + "@40.png");
+    }
+}
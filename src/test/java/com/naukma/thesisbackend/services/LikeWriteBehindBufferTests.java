@@ -0,0 +1,147 @@
+package com.naukma.thesisbackend.services;
+
+import com.naukma.thesisbackend.cache.FeedCache;
+import com.naukma.thesisbackend.enums.LikeTarget;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository.LikeChange;
+import com.naukma.thesisbackend.search.LikeRankingIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LikeWriteBehindBufferTests {
+
+    private LikeJdbcRepository likeJdbcRepository;
+    private FeedCache feedCache;
+    private LikeRankingIndex likeRankingIndex;
+    private LikeWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void createBuffer() {
+        likeJdbcRepository = mock(LikeJdbcRepository.class);
+        feedCache = mock(FeedCache.class);
+        likeRankingIndex = mock(LikeRankingIndex.class);
+        buffer = new LikeWriteBehindBuffer(likeJdbcRepository, feedCache, likeRankingIndex,
+                mock(TrendingScoreService.class), mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void repeatedTogglesCancelEachOther() {
+        AtomicInteger queries = new AtomicInteger();
+
+        assertThat(buffer.toggle(LikeTarget.POST, "user", 1L, () -> queries.incrementAndGet() < 0)).isTrue();
+        assertThat(buffer.toggle(LikeTarget.POST, "user", 1L, () -> queries.incrementAndGet() < 0)).isFalse();
+        buffer.flush();
+
+        assertThat(queries).hasValue(1);
+        verify(likeJdbcRepository, never()).applyLikeChanges(any(), anyList(), any());
+    }
+
+    @Test
+    void databaseIsNotQueriedForPendingLike() {
+        assertThat(buffer.set(LikeTarget.POST, "user", 1L, true, () -> false)).isTrue();
+        assertThat(buffer.set(LikeTarget.POST, "user", 1L, true, () -> {
+            throw new AssertionError("like is pending");
+        })).isFalse();
+    }
+
+    @Test
+    void pendingLikesAreAppliedOnReads() {
+        buffer.set(LikeTarget.POST, "user", 1L, true, () -> false);
+        buffer.set(LikeTarget.POST, "user", 2L, false, () -> true);
+        buffer.set(LikeTarget.COMMENT, "user", 3L, true, () -> false);
+
+        assertThat(buffer.applyPending(LikeTarget.POST, "user", Set.of(2L, 4L))).containsExactlyInAnyOrder(1L, 4L);
+        assertThat(buffer.applyPending(LikeTarget.COMMENT, "user", Set.of())).containsExactly(3L);
+        assertThat(buffer.applyPending(LikeTarget.POST, "other", Set.of(2L))).containsExactly(2L);
+        assertThat(buffer.applyPending(LikeTarget.POST, 1L, 5)).isEqualTo(6);
+        assertThat(buffer.applyPending(LikeTarget.POST, 2L, 5)).isEqualTo(4);
+        assertThat(buffer.applyPending(LikeTarget.COMMENT, 1L, 5)).isEqualTo(5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesPendingLikesOnce() {
+        when(likeJdbcRepository.applyLikeChanges(eq(LikeTarget.POST), anyList(), any())).thenReturn(Map.of(1L, 2));
+        buffer.set(LikeTarget.POST, "first", 1L, true, () -> false);
+        buffer.set(LikeTarget.POST, "second", 1L, true, () -> false);
+
+        buffer.flush();
+        buffer.flush();
+
+        ArgumentCaptor<List<LikeChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(likeJdbcRepository, times(1)).applyLikeChanges(eq(LikeTarget.POST), changes.capture(), any());
+        assertThat(changes.getValue())
+                .extracting(LikeChange::userId, LikeChange::targetId, LikeChange::liked)
+                .containsExactlyInAnyOrder(
+                        tuple("first", 1L, true),
+                        tuple("second", 1L, true));
+        verify(likeRankingIndex).increment(1L, 2);
+        verify(feedCache).evictLikes(Set.of(1L));
+        assertThat(buffer.applyPending(LikeTarget.POST, 1L, 2)).isEqualTo(2);
+    }
+
+    @Test
+    void failedFlushKeepsLikesPending() {
+        when(likeJdbcRepository.applyLikeChanges(eq(LikeTarget.POST), anyList(), any()))
+                .thenThrow(new IllegalStateException("database is down"))
+                .thenReturn(Map.of(1L, 1));
+        buffer.set(LikeTarget.POST, "user", 1L, true, () -> false);
+
+        buffer.flush();
+        assertThat(buffer.applyPending(LikeTarget.POST, "user", Set.of())).containsExactly(1L);
+        assertThat(buffer.applyPending(LikeTarget.POST, 1L, 0)).isEqualTo(1);
+
+        buffer.flush();
+        verify(likeJdbcRepository, times(2)).applyLikeChanges(eq(LikeTarget.POST), anyList(), any());
+        assertThat(buffer.applyPending(LikeTarget.POST, 1L, 1)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentTogglesOfTheSameLikeAreNotLost() throws Exception {
+        int toggles = 51;
+        List<Callable<Boolean>> requests = new ArrayList<>();
+        for(int i = 0; i < toggles; i++){
+            requests.add(() -> buffer.toggle(LikeTarget.POST, "user", 1L, () -> {
+                //slow query makes toggles overlap between reading database and changing pending state
+                LockSupport.parkNanos(1_000_000);
+                return false;
+            }));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Boolean> results = new ArrayList<>();
+        try {
+            for(Future<Boolean> result : executor.invokeAll(requests)) results.add(result.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(results.stream().filter(Boolean::booleanValue).count()).isEqualTo(toggles / 2 + 1);
+        assertThat(buffer.applyPending(LikeTarget.POST, "user", Set.of())).containsExactly(1L);
+        assertThat(buffer.applyPending(LikeTarget.POST, 1L, 0)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,77 @@
+package com.naukma.thesisbackend.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.naukma.thesisbackend.ApiTestSupport;
+import com.naukma.thesisbackend.dtos.CommentImportDto;
+import com.naukma.thesisbackend.dtos.PostImportDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * imports are run with chunks of two lines
+ */
+class PostImportTests extends ApiTestSupport {
+
+    @Test
+    void failedChunkIsRolledBackAndReported() throws Exception {
+        TestUser admin = signUpAdmin("importer");
+        String author = signUp("imported").userId();
+        LocalDateTime postedDate = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        String body = String.join("\n",
+                line(new PostImportDto("first", "content", postedDate, author, List.of(), List.of())),
+                "{not json",
+                line(new PostImportDto("rolled back", "content", postedDate, author, List.of(), List.of())),
+                //title is longer than its column, so insert of the whole chunk fails
+                line(new PostImportDto("x".repeat(300), "content", postedDate, author, List.of(), List.of())),
+                line(new PostImportDto("unknown author", "content", postedDate, "no-such-user", List.of(), List.of())),
+                line(new PostImportDto("with comments", "content", postedDate, author, List.of(), List.of(
+                        new CommentImportDto(1L, null, "comment", author, postedDate),
+                        new CommentImportDto(2L, 1L, "reply", author, postedDate)))));
+
+        JsonNode report = json(mockMvc.perform(as(admin, post("/api/v1/admin/posts/import"))
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn());
+
+        assertThat(report.get("posts").asLong()).isEqualTo(2);
+        assertThat(report.get("comments").asLong()).isEqualTo(2);
+        assertThat(report.get("failedLines").asLong()).isEqualTo(4);
+
+        JsonNode chunks = report.get("chunks");
+        assertThat(chunks).hasSize(3);
+        assertChunk(chunks.get(0), 1, 2, 1, 1);
+        assertThat(chunks.get(0).get("errors").get(0).asText()).startsWith("line 2: invalid JSON");
+        assertChunk(chunks.get(1), 3, 4, 0, 2);
+        assertThat(chunks.get(1).get("errors").get(0).asText()).startsWith("lines 3-4 rolled back");
+        assertChunk(chunks.get(2), 5, 6, 1, 1);
+        assertThat(chunks.get(2).get("errors").get(0).asText()).isEqualTo("line 5: no such user no-such-user");
+
+        assertThat(jdbcTemplate.queryForList("SELECT title FROM post WHERE user_id = ? ORDER BY post_id", String.class, author))
+                .containsExactly("first", "with comments");
+        assertThat(jdbcTemplate.queryForList("SELECT content FROM comment WHERE user_id = ? ORDER BY comment_id", String.class, author))
+                .containsExactly("comment", "reply");
+        //counters of rolled back chunk are rolled back too
+        assertThat(jdbcTemplate.queryForObject("SELECT post_count FROM \"app-user\" WHERE user_id = ?", Integer.class, author))
+                .isEqualTo(2);
+    }
+
+    private String line(PostImportDto post) throws Exception {
+        return objectMapper.writeValueAsString(post);
+    }
+
+    private static void assertChunk(JsonNode chunk, long fromLine, long toLine, int posts, int failedLines) {
+        assertThat(chunk.get("fromLine").asLong()).isEqualTo(fromLine);
+        assertThat(chunk.get("toLine").asLong()).isEqualTo(toLine);
+        assertThat(chunk.get("posts").asInt()).isEqualTo(posts);
+        assertThat(chunk.get("failedLines").asInt()).isEqualTo(failedLines);
+    }
+}
@@ -0,0 +1,145 @@
+package com.naukma.thesisbackend.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.naukma.thesisbackend.ApiTestSupport;
+import com.naukma.thesisbackend.enums.LikeTarget;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository;
+import com.naukma.thesisbackend.repositories.LikeJdbcRepository.LikeChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * passing of time is simulated by moving dates of likes back and decaying scores of their posts accordingly
+ */
+class TrendingScoreTests extends ApiTestSupport {
+
+    @Autowired
+    private TrendingScoreService trendingScoreService;
+
+    @Autowired
+    private LikeJdbcRepository likeJdbcRepository;
+
+    @Value("${custom.trending.half-life-hours}")
+    private int halfLifeHours;
+
+    @Value("${custom.trending.decay-interval-minutes}")
+    private double decayIntervalMinutes;
+
+    @Test
+    void removedLikeSubtractsItsDecayedWeight() throws Exception {
+        long postId = createPost(signUp("trending"), "trending post");
+        TestUser oldLiker = signUp("liker");
+        TestUser newLiker = signUp("liker");
+
+        mockMvc.perform(as(oldLiker, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        passHalfLife(postId);
+        mockMvc.perform(as(newLiker, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        assertThat(trendingScore(postId)).isCloseTo(1.5, within(0.01));
+
+        //only the half of old like is left in score, the new like stays whole
+        mockMvc.perform(as(oldLiker, patch("/api/v1/posts/" + postId + "/toggle-like"))).andExpect(status().isOk());
+        assertThat(trendingScore(postId)).isCloseTo(1, within(0.01));
+        mockMvc.perform(as(newLiker, delete("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        assertThat(trendingScore(postId)).isCloseTo(0, within(0.01));
+    }
+
+    @Test
+    void likesOfDeletedUserSubtractTheirDecayedWeights() throws Exception {
+        long postId = createPost(signUp("trending"), "post liked by deleted user");
+        TestUser staying = signUp("liker");
+        TestUser deleted = signUp("liker");
+
+        mockMvc.perform(as(deleted, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        passHalfLife(postId);
+        mockMvc.perform(as(staying, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+
+        mockMvc.perform(as(deleted, delete("/api/v1/users/" + deleted.userId()))).andExpect(status().isOk());
+
+        assertThat(trendingScore(postId)).isCloseTo(1, within(0.01));
+    }
+
+    @Test
+    void batchOfLikesChangesScoreByWeightsOfLikes() throws Exception {
+        long postId = createPost(signUp("trending"), "post liked in batch");
+        TestUser oldLiker = signUp("liker");
+        TestUser newLiker = signUp("liker");
+
+        mockMvc.perform(as(oldLiker, put("/api/v1/posts/" + postId + "/like"))).andExpect(status().isOk());
+        passHalfLife(postId);
+
+        //like counter doesn't change, but score does, since removed like weighs less than the new one
+        LocalDateTime now = LocalDateTime.now();
+        likeJdbcRepository.applyLikeChanges(LikeTarget.POST, List.of(
+                new LikeChange(oldLiker.userId(), postId, false, now),
+                new LikeChange(newLiker.userId(), postId, true, now)), trendingScoreService::weightOf);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM post WHERE post_id = ?", Integer.class, postId))
+                .isEqualTo(1);
+        assertThat(trendingScore(postId)).isCloseTo(1, within(0.01));
+    }
+
+    @Test
+    void decayReducesScoresAndDropsNegligibleOnes() throws Exception {
+        TestUser author = signUp("trending");
+        long trending = createPost(author, "decayed post");
+        long forgotten = createPost(author, "forgotten post");
+        setTrendingScore(trending, 1);
+        setTrendingScore(forgotten, 0.01);
+
+        trendingScoreService.decay();
+
+        assertThat(trendingScore(trending)).isCloseTo(Math.pow(0.5, decayIntervalMinutes / (halfLifeHours * 60.0)), within(1e-9));
+        assertThat(trendingScore(forgotten)).isZero();
+    }
+
+    @Test
+    void postsAreSortedByTrendingScore() throws Exception {
+        TestUser author = signUp("trending");
+        long oldFavourite = createPost(author, "old favourite");
+        long rising = createPost(author, "rising post");
+        long quiet = createPost(author, "quiet post");
+        //the most liked post has the lowest score, since its likes are old
+        jdbcTemplate.update("UPDATE post SET like_count = 10 WHERE post_id = ?", oldFavourite);
+        setTrendingScore(oldFavourite, 0.5);
+        setTrendingScore(rising, 2);
+        setTrendingScore(quiet, 1);
+
+        String url = "/api/v1/posts?authorId=" + author.userId() + "&sortBy=trending";
+        assertThat(postIds(getJson(url, null))).containsExactly(rising, quiet, oldFavourite);
+        assertThat(postIds(getJson(url + "&sortDirection=ASC", null))).containsExactly(oldFavourite, quiet, rising);
+    }
+
+    /**
+     * makes likes of post one half-life older, as if it passed since they were set
+     */
+    private void passHalfLife(long postId) {
+        jdbcTemplate.update("UPDATE post_like SET like_date = DATEADD('HOUR', ?, like_date) WHERE post_id = ?", -halfLifeHours, postId);
+        jdbcTemplate.update("UPDATE post SET trending_score = trending_score / 2 WHERE post_id = ?", postId);
+    }
+
+    private void setTrendingScore(long postId, double trendingScore) {
+        jdbcTemplate.update("UPDATE post SET trending_score = ? WHERE post_id = ?", trendingScore, postId);
+    }
+
+    private double trendingScore(long postId) {
+        return jdbcTemplate.queryForObject("SELECT trending_score FROM post WHERE post_id = ?", Double.class, postId);
+    }
+
+    private static List<Long> postIds(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("content").forEach(post -> ids.add(post.get("postId").asLong()));
+        return ids;
+    }
+}